@@ -0,0 +1,136 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of reading whole files, single frames and headers only. Each
+ * trial writes a synthetic file of the requested kind to a temp directory.
+ * The "bytes" counter reports the file bytes consumed per second. Run with
+ * -prof gc to see allocation rates.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EcatReadBenchmark {
+
+	@Param({"7", "11", "3", "13"})
+	public short fileType;
+
+	@Param({"1", "2", "3", "4", "5", "6", "7"})
+	public short dataType;
+
+	@Param({"big", "little"})
+	public String byteOrder;
+
+	@Param({"1.0", "0.25"})
+	public float scaleFactor;
+
+	@Param({"EXACT"})
+	public String scaleMode;
+
+	// a typical dynamic brain study: 128 x 128 x 63 per frame
+
+	@Param({"8"})
+	public int numFrames;
+
+	@Param({"63"})
+	public int numPlanes;
+
+	@Param({"128"})
+	public int size;
+
+	private File file;
+	private SyntheticEcatFile synthetic;
+	private EcatOptions options;
+
+	/**
+	 * Counts the file bytes each benchmark consumed.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Bytes {
+
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void writeFile() throws IOException {
+		synthetic = new SyntheticEcatFile(fileType, dataType, byteOrder.equals("big"),
+											numFrames, numPlanes, size, size, scaleFactor);
+		file = File.createTempFile("ecat-bench", ".v");
+		synthetic.write(file);
+		options = new EcatOptions();
+		options.setScaleMode(EcatOptions.ScaleMode.valueOf(scaleMode));
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Benchmark
+	public void fullFile(Bytes counter, Blackhole bh) {
+		bh.consume(Ecat.readAllDatasets(file.toURI(), options));
+		counter.bytes += file.length();
+	}
+
+	@Benchmark
+	public void singleFrame(Bytes counter, Blackhole bh) throws IOException {
+		try (EcatFile ecat = EcatFile.open(file.toURI(), options)) {
+			bh.consume(ecat.dataset(ecat.numDatasets() / 2));
+		}
+		counter.bytes += synthetic.frameBytes();
+	}
+
+	@Benchmark
+	public void headersOnly(Bytes counter, Blackhole bh) throws IOException {
+		bh.consume(Ecat.readHeaders(file.toURI()));
+		counter.bytes += synthetic.headerBytes();
+	}
+}
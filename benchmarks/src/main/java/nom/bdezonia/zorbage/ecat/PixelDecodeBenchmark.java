@@ -0,0 +1,135 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nom.bdezonia.zorbage.algebra.Allocatable;
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.datasource.IndexedDataSource;
+import nom.bdezonia.zorbage.storage.Storage;
+
+/**
+ * Decoding speed of one plane of in memory pixels: plain decoding into the
+ * native type, decoding with a scale factor and the vax float conversion on
+ * its own. Time is reported per plane.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class PixelDecodeBenchmark {
+
+	@Param({"1", "2", "3", "4", "5", "6", "7"})
+	public short dataType;
+
+	@Param({"big", "little"})
+	public String byteOrder;
+
+	@Param({"16384"})
+	public int numPixels;
+
+	private BufferEcatInput input;
+	private PixelDecoder decoder;
+	private IndexedDataSource exact;
+	private IndexedDataSource scaled;
+	private Allocatable scaledType;
+	private int[] vaxBits;
+	private double[] vaxDoubles;
+
+	@Setup
+	public void setup() {
+		Random rng = new Random(1234);
+		byte[] bytes = new byte[numPixels * PixelDecoder.bytesPerPixel(dataType)];
+		rng.nextBytes(bytes);
+		boolean bigEndian = byteOrder.equals("big");
+		if (dataType == 4 || dataType == 5) {
+			// keep the exponents sane so no NaNs or infinities are produced
+			ByteBuffer b = ByteBuffer.wrap(bytes);
+			for (int i = 0; i < numPixels; i++) {
+				int v = (130 << 23) | rng.nextInt(1 << 23);
+				if (!bigEndian && dataType == 4)
+					v = Ecat.swapIntWords(v);
+				if (!bigEndian && dataType == 5)
+					v = ((v & 0x00ff00ff) << 8) | ((v >>> 8) & 0x00ff00ff);
+				b.putInt(v);
+			}
+		}
+		input = new BufferEcatInput(ByteBuffer.wrap(bytes));
+		input.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		decoder = new PixelDecoder();
+		exact = Storage.allocate(Ecat.value(dataType, true), numPixels);
+		scaledType = Ecat.scaledValue(dataType, EcatOptions.ScaleMode.FLOAT32);
+		scaled = Storage.allocate(scaledType, numPixels);
+		vaxBits = new int[numPixels];
+		vaxDoubles = new double[numPixels];
+		for (int i = 0; i < numPixels; i++) {
+			vaxBits[i] = ((120 + rng.nextInt(20)) << 23) | rng.nextInt(1 << 23);
+		}
+	}
+
+	@Benchmark
+	public Object decode() throws IOException {
+		input.seek(0);
+		decoder.decode(input, dataType, true, numPixels, exact, 0, numPixels);
+		return exact;
+	}
+
+	@Benchmark
+	public Object decodeScaled() throws IOException {
+		input.seek(0);
+		decoder.decodeScaled(input, dataType, true, numPixels, 0.25, scaledType, scaled, 0, numPixels);
+		return scaled;
+	}
+
+	@Benchmark
+	public void vaxFloatBitsToDouble(Blackhole bh) {
+		for (int i = 0; i < vaxBits.length; i++) {
+			bh.consume(PixelDecoder.vaxFloatBitsToDouble(vaxBits[i]));
+		}
+	}
+
+	@Benchmark
+	public double[] vaxFloatBitsToDoubles() {
+		PixelDecoder.vaxFloatBitsToDoubles(vaxBits, vaxDoubles, vaxBits.length, false);
+		return vaxDoubles;
+	}
+}
@@ -0,0 +1,359 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Writes synthetic ecat 7 files for the benchmarks. Any of the supported file
+ * types (3, 7, 11, 13) can be combined with any data type (1 - 7) and either
+ * byte order. Pixel values are pseudo random but repeatable.
+ * <p>
+ * Little endian files are laid out the way this library reads them: ints and
+ * pixels are little endian, header floats are byte and word swapped and the
+ * header shorts other than the first three stay big endian.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class SyntheticEcatFile {
+
+	private final short fileType;
+	private final short dataType;
+	private final boolean bigEndian;
+	private final int numFrames;
+	private final int numPlanes;
+	private final int width;
+	private final int height;
+	private final float scaleFactor;
+
+	/**
+	 * 
+	 * @param fileType The ecat file type (3, 7, 11 or 13).
+	 * @param dataType The ecat data type (1 - 7).
+	 * @param bigEndian
+	 * @param numFrames
+	 * @param numPlanes
+	 * @param width
+	 * @param height
+	 * @param scaleFactor
+	 */
+	public SyntheticEcatFile(short fileType, short dataType, boolean bigEndian,
+								int numFrames, int numPlanes, int width, int height,
+								float scaleFactor)
+	{
+		if (fileType != 3 && fileType != 7 && fileType != 11 && fileType != 13)
+			throw new IllegalArgumentException("unsupported file type "+fileType);
+		PixelDecoder.bytesPerPixel(dataType);  // validates the data type
+		this.fileType = fileType;
+		this.dataType = dataType;
+		this.bigEndian = bigEndian;
+		this.numFrames = numFrames;
+		this.numPlanes = numPlanes;
+		this.width = width;
+		this.height = height;
+		this.scaleFactor = scaleFactor;
+	}
+
+	/**
+	 * Returns the number of pixel bytes in one frame.
+	 */
+	public long frameBytes() {
+		return 1L * width * height * numPlanes * PixelDecoder.bytesPerPixel(dataType);
+	}
+
+	/**
+	 * Returns the number of header bytes (main header, directory and subheaders).
+	 */
+	public long headerBytes() {
+		return 512L * (1 + numDirectoryNodes() + numFrames * subheaderBlocks());
+	}
+
+	/**
+	 * Write the file.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+
+		int dataBlocks = (int) ((frameBytes() + 511) / 512);
+		
+		int frameBlocks = subheaderBlocks() + dataBlocks;
+
+		// block 1 is the main header, block 2 the first directory node and
+		//   the frames follow. any more directory nodes go at the end.
+		
+		int numNodes = numDirectoryNodes();
+		
+		int[] nodeBlocks = new int[numNodes];
+		nodeBlocks[0] = EcatDirectory.FIRST_NODE_BLOCK;
+		for (int n = 1; n < numNodes; n++) {
+			nodeBlocks[n] = 3 + numFrames * frameBlocks + (n - 1);
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			writeFully(channel, mainHeader());
+
+			for (int n = 0; n < numNodes; n++) {
+				
+				ByteBuffer node = block(512);
+				int first = n * 31;
+				int used = Math.min(31, numFrames - first);
+				putInt(node, 31 - used);
+				putInt(node, nodeBlocks[(n + 1) % numNodes]);
+				putInt(node, nodeBlocks[(n + numNodes - 1) % numNodes]);
+				putInt(node, used);
+				for (int i = 0; i < used; i++) {
+					int frame = first + i;
+					int start = 3 + frame * frameBlocks;
+					putInt(node, EcatDirectory.matrixNumber(frame + 1, 1, 1, 0, 0));
+					putInt(node, start);
+					putInt(node, start + frameBlocks - 1);
+					putInt(node, 1);
+				}
+				node.clear();
+				writeFully(channel, node, 512L * (nodeBlocks[n] - 1));
+			}
+			
+			ByteBuffer pixels = block(512 * dataBlocks);
+			
+			for (int f = 0; f < numFrames; f++) {
+
+				long pos = 512L * (2 + f * frameBlocks);
+				
+				ByteBuffer sh = subheader(f);
+				writeFully(channel, sh, pos);
+				
+				pixels.clear();
+				fillPixels(pixels, new Random(1234 + f));
+				pixels.clear();
+				writeFully(channel, pixels, pos + sh.capacity());
+			}
+		}
+	}
+
+	private int numDirectoryNodes() {
+		return Math.max(1, (numFrames + 30) / 31);
+	}
+	
+	private int subheaderBlocks() {
+		return fileType == 11 ? 2 : 1;
+	}
+	
+	private ByteBuffer mainHeader() {
+
+		ByteBuffer b = block(512);
+		putString(b, 14, "MATRIX72v");
+		putString(b, 32, "synthetic.v");
+		b.putShort(order((short) 72));  // sw version
+		b.putShort((short) 0);  // system type
+		b.putShort(order(fileType));
+		putString(b, 10, "0");
+		putInt(b, 0);  // scan start time
+		putString(b, 8, "F-18");
+		putFloat(b, 6586.2f);
+		putString(b, 32, "FDG");
+		for (int i = 0; i < 4; i++) putFloat(b, 0);
+		b.position(b.position() + 2 * 2);
+		putFloat(b, 0);
+		putFloat(b, 0);
+		b.position(b.position() + 3 * 2);
+		putFloat(b, 1);  // calibration factor
+		b.position(b.position() + 3 * 2);
+		putString(b, 12, "study");
+		putString(b, 16, "ID");
+		putString(b, 32, "synthetic");
+		putString(b, 1, "O");
+		putString(b, 1, "U");
+		for (int i = 0; i < 3; i++) putFloat(b, 0);
+		putInt(b, 0);  // birth date
+		putString(b, 32, "");
+		putString(b, 32, "");
+		putString(b, 32, "synthetic data");
+		b.position(b.position() + 2 * 2);
+		putString(b, 20, "");
+		b.putShort((short) numPlanes);
+		b.putShort((short) numFrames);
+		b.putShort((short) 1);  // gates
+		b.putShort((short) 0);  // bed positions
+		for (int i = 0; i < 16; i++) putFloat(b, 0);
+		putFloat(b, 2.4f);  // plane separation
+		b.position(b.position() + 3 * 2);
+		putString(b, 10, "");
+		b.putShort((short) 0);  // acquisition mode
+		putFloat(b, 0);
+		putFloat(b, 0);
+		putInt(b, 0);
+		putFloat(b, 0);
+		putFloat(b, 0);
+		putString(b, 32, "Bq/ml");
+		b.clear();
+		return b;
+	}
+	
+	private ByteBuffer subheader(int frame) {
+
+		ByteBuffer b = block(512 * subheaderBlocks());
+		b.putShort(dataType);
+		b.putShort((short) 3);
+		switch (fileType) {
+		case 3:
+			b.putShort((short) 0);  // attenuation type
+			b.putShort((short) width);
+			b.putShort((short) height);
+			b.putShort((short) numPlanes);
+			b.putShort((short) 0);
+			for (int i = 0; i < 4; i++) putFloat(b, 1);
+			putFloat(b, scaleFactor);
+			for (int i = 0; i < 6; i++) putFloat(b, 0);
+			putFloat(b, 0);  // min
+			putFloat(b, 1);  // max
+			break;
+		case 7:
+			b.putShort((short) width);
+			b.putShort((short) height);
+			b.putShort((short) numPlanes);
+			for (int i = 0; i < 3; i++) putFloat(b, 0);
+			putFloat(b, 1);  // zoom
+			putFloat(b, scaleFactor);
+			b.putShort((short) 0);  // min
+			b.putShort((short) 30000);  // max
+			putFloat(b, 2);
+			putFloat(b, 2);
+			putFloat(b, 2.4f);
+			putInt(b, 60000);  // duration
+			putInt(b, frame * 60000);  // start time
+			break;
+		case 11:
+			b.putShort((short) width);
+			b.putShort((short) height);
+			b.putShort((short) 0);  // corrections
+			b.putShort((short) numPlanes);
+			b.putShort((short) 0);
+			for (int i = 0; i < 4; i++) putFloat(b, 1);
+			b.position(b.position() + 6 * 2);
+			for (int i = 0; i < 3; i++) putInt(b, 0);
+			putFloat(b, scaleFactor);
+			b.putShort((short) 0);  // min
+			b.putShort((short) 30000);  // max
+			for (int i = 0; i < 4; i++) putInt(b, 0);
+			for (int i = 0; i < 34; i++) putFloat(b, 0);
+			putInt(b, 0);
+			putInt(b, frame * 60000);  // start time
+			putInt(b, 60000);  // duration
+			break;
+		case 13:
+			b.putShort((short) width);
+			b.putShort((short) height);
+			b.putShort((short) numPlanes);
+			b.putShort((short) 0);
+			putFloat(b, scaleFactor);
+			putFloat(b, 0);  // min
+			putFloat(b, 1);  // max
+			break;
+		}
+		b.clear();
+		return b;
+	}
+
+	private void fillPixels(ByteBuffer b, Random rng) {
+
+		// pixels are written in the byte order of the file
+
+		b.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		
+		long count = 1L * width * height * numPlanes;
+		
+		for (long i = 0; i < count; i++) {
+			switch (dataType) {
+			case 1:
+				b.put((byte) rng.nextInt(200));
+				break;
+			case 2:
+			case 6:
+				b.putShort((short) rng.nextInt(30000));
+				break;
+			case 3:
+			case 7:
+				b.putInt(rng.nextInt(3000000));
+				break;
+			case 4:
+				// a positive vax float with an exponent near 0
+				int vax = ((120 + rng.nextInt(20)) << 23) | rng.nextInt(1 << 23);
+				b.order(ByteOrder.BIG_ENDIAN);
+				b.putInt(bigEndian ? vax : Ecat.swapIntWords(vax));
+				break;
+			case 5:
+				int bits = Float.floatToIntBits(rng.nextFloat() * 1000);
+				if (!bigEndian)
+					bits = ((bits & 0x00ff00ff) << 8) | ((bits >>> 8) & 0x00ff00ff);
+				b.order(ByteOrder.BIG_ENDIAN);
+				b.putInt(bits);
+				break;
+			}
+		}
+	}
+
+	private static ByteBuffer block(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private short order(short v) {
+		return bigEndian ? v : Ecat.swapShort(v);
+	}
+	
+	private void putInt(ByteBuffer b, int v) {
+		b.putInt(bigEndian ? v : Integer.reverseBytes(v));
+	}
+	
+	// the inverse of Ecat.readFloat()
+	
+	private void putFloat(ByteBuffer b, float v) {
+		int bits = Float.floatToIntBits(v);
+		if (!bigEndian)
+			bits = Ecat.swapIntBytes(Ecat.swapIntWords(bits));
+		b.putInt(bits);
+	}
+	
+	private static void putString(ByteBuffer b, int len, String s) {
+		byte[] chars = s.getBytes(StandardCharsets.US_ASCII);
+		int n = Math.min(len, chars.length);
+		b.put(chars, 0, n);
+		b.position(b.position() + len - n);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer b) throws IOException {
+		while (b.hasRemaining())
+			channel.write(b);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer b, long pos) throws IOException {
+		while (b.hasRemaining())
+			pos += channel.write(b, pos);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+/**
+ * Checks that the table based vax float conversion turns each of the 2^32
+ * bit patterns into the same bits as the Math.pow based conversion it
+ * replaced, and that word swapped input gives the same results. Only the
+ * bits to value step is compared with the old code: the old little endian
+ * read sign extended one of the swapped words and gave wrong values for some
+ * inputs (see TestPixelDecoder). This takes a few minutes so it is not part
+ * of the unit tests. Run it with:
+ * <p>
+ *   java -cp target/benchmarks.jar nom.bdezonia.zorbage.ecat.VaxFloatCheck
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class VaxFloatCheck {
+
+	// the conversion the reader used before the table based one
+
+	private static double vaxFloatBitsToDoubleOld(int bits) {
+
+		int sign = (bits >> 31) & 1;
+		int exponent = (bits >> 23) & 0xff;
+		int mantissa = (bits >> 0) & ((1<<24) - 1);
+		
+		double value = (1.0 + (mantissa / Math.pow(2, 23))) * Math.pow(2, exponent - 129);
+
+		if (sign == 0)
+			return value;
+		
+		return -value;
+	}
+
+	public static void main(String[] args) {
+
+		int n = 1 << 16;
+		int[] src = new int[n];
+		double[] dst = new double[n];
+		double[] swapped = new double[n];
+
+		long mismatches = 0;
+
+		for (int hi = 0; hi < n; hi++) {
+
+			for (int lo = 0; lo < n; lo++)
+				src[lo] = (hi << 16) | lo;
+
+			PixelDecoder.vaxFloatBitsToDoubles(src, dst, n, false);
+
+			for (int lo = 0; lo < n; lo++) {
+
+				long expected = Double.doubleToRawLongBits(vaxFloatBitsToDoubleOld(src[lo]));
+
+				if (Double.doubleToRawLongBits(dst[lo]) != expected ||
+						Double.doubleToRawLongBits(PixelDecoder.vaxFloatBitsToDouble(src[lo])) != expected)
+				{
+					if (mismatches++ < 10)
+						System.out.println("mismatch for bits " + Integer.toHexString(src[lo]));
+				}
+			}
+
+			// little endian files store the two 16-bit words the other way around
+
+			for (int lo = 0; lo < n; lo++)
+				src[lo] = Integer.rotateLeft(src[lo], 16);
+
+			PixelDecoder.vaxFloatBitsToDoubles(src, swapped, n, true);
+
+			for (int lo = 0; lo < n; lo++) {
+
+				if (Double.doubleToRawLongBits(swapped[lo]) != Double.doubleToRawLongBits(dst[lo])) {
+
+					if (mismatches++ < 10)
+						System.out.println("word swapped mismatch for bits " + Integer.toHexString(src[lo]));
+				}
+			}
+		}
+
+		System.out.println("checked all 2^32 bit patterns: " + mismatches + " mismatches");
+
+		System.exit(mismatches == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,261 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An ecat input that decodes from one or more ByteBuffers. Files are memory
+ * mapped in chunks since a single mapping is limited to 2 gig.
+ *
+ * @author Barry DeZonia
+ *
+ */
+class BufferEcatInput extends EcatInput {
+
+	private static final int CHUNK_SIZE = 1 << 30;
+
+	private static final int PAGE_SIZE = 4096;
+
+	private final ByteBuffer[] chunks;
+	private final long length;
+	private int chunk;
+	private ByteBuffer buf;
+	private int touched;
+
+	/**
+	 * Wrap a single in memory buffer starting at its current position.
+	 *
+	 * @param buffer
+	 */
+	BufferEcatInput(ByteBuffer buffer) {
+		this(new ByteBuffer[] {buffer.slice()}, buffer.remaining());
+	}
+
+	private BufferEcatInput(ByteBuffer[] chunks, long length) {
+		this.chunks = chunks;
+		this.length = length;
+		this.chunk = 0;
+		this.buf = chunks[0];
+		this.buf.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Memory map a whole file for reading.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static BufferEcatInput map(File file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			long size = channel.size();
+
+			int numChunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+			ByteBuffer[] chunks = new ByteBuffer[numChunks];
+
+			for (int i = 0; i < numChunks; i++) {
+				long start = 1L * i * CHUNK_SIZE;
+				long len = Math.min(CHUNK_SIZE, size - start);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+			}
+
+			// the mappings remain valid after the channel is closed
+
+			return new BufferEcatInput(chunks, size);
+		}
+	}
+
+	/**
+	 * Make an independent input over the same bytes. The copy has its own
+	 * position (initially 0) and the same byte order. Copies can be read
+	 * concurrently from different threads.
+	 *
+	 * @return
+	 */
+	BufferEcatInput duplicate() {
+		ByteBuffer[] copies = new ByteBuffer[chunks.length];
+		for (int i = 0; i < chunks.length; i++) {
+			copies[i] = chunks[i].duplicate();
+			copies[i].position(0);
+		}
+		BufferEcatInput copy = new BufferEcatInput(copies, length);
+		copy.order(order());
+		return copy;
+	}
+
+	/**
+	 * Page part of the mapped file into memory so that decoding it later does
+	 * not wait on the disk. One byte of every page is touched.
+	 *
+	 * @param pos The byte offset of the part.
+	 * @param len The number of bytes in the part.
+	 */
+	void load(long pos, long len) {
+		long end = Math.min(length, pos + len);
+		int sum = 0;
+		for (long p = Math.max(0, pos); p < end; p += PAGE_SIZE) {
+			ByteBuffer b = chunks[(int) (p / CHUNK_SIZE)];
+			if (b instanceof MappedByteBuffer)
+				sum += b.get((int) (p % CHUNK_SIZE));
+		}
+		// keep the reads from being optimized away
+		touched = sum;
+	}
+
+	@Override
+	void order(ByteOrder order) {
+		super.order(order);
+		for (ByteBuffer b : chunks) {
+			b.order(order);
+		}
+	}
+
+	@Override
+	byte readByte() throws IOException {
+		if (!buf.hasRemaining())
+			nextChunk();
+		return buf.get();
+	}
+
+	@Override
+	short readShort() throws IOException {
+		short v = readOrderedShort();
+		if (!isBigEndian()) v = Short.reverseBytes(v);
+		return v;
+	}
+
+	@Override
+	int readInt() throws IOException {
+		int v = readOrderedInt();
+		if (!isBigEndian()) v = Integer.reverseBytes(v);
+		return v;
+	}
+
+	@Override
+	short readOrderedShort() throws IOException {
+		if (buf.remaining() >= 2)
+			return buf.getShort();
+		return (short) straddle(2);
+	}
+
+	@Override
+	int readOrderedInt() throws IOException {
+		if (buf.remaining() >= 4)
+			return buf.getInt();
+		return (int) straddle(4);
+	}
+
+	@Override
+	void readFully(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (!buf.hasRemaining())
+				nextChunk();
+			int n = Math.min(len, buf.remaining());
+			buf.get(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	void readShorts(short[] dst, int off, int len, ByteOrder byteOrder) throws IOException {
+		if (buf.remaining() >= 2L * len) {
+			ByteBuffer view = buf.duplicate().order(byteOrder);
+			view.asShortBuffer().get(dst, off, len);
+			buf.position(buf.position() + 2 * len);
+		}
+		else {
+			super.readShorts(dst, off, len, byteOrder);
+		}
+	}
+
+	@Override
+	void readInts(int[] dst, int off, int len, ByteOrder byteOrder) throws IOException {
+		if (buf.remaining() >= 4L * len) {
+			ByteBuffer view = buf.duplicate().order(byteOrder);
+			view.asIntBuffer().get(dst, off, len);
+			buf.position(buf.position() + 4 * len);
+		}
+		else {
+			super.readInts(dst, off, len, byteOrder);
+		}
+	}
+
+	@Override
+	long position() {
+		return 1L * chunk * CHUNK_SIZE + buf.position();
+	}
+
+	@Override
+	void skip(long numBytes) throws IOException {
+		seek(position() + numBytes);
+	}
+
+	@Override
+	void seek(long pos) throws IOException {
+		if (pos < 0 || pos > length)
+			throw new EOFException("seek position "+pos+" is outside of the data (size "+length+")");
+		int c = (int) Math.min(chunks.length - 1, pos / CHUNK_SIZE);
+		chunk = c;
+		buf = chunks[c];
+		buf.position((int) (pos - 1L * c * CHUNK_SIZE));
+	}
+
+	@Override
+	boolean isRandomAccess() {
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// nothing to do: mapped buffers are released by the garbage collector
+	}
+
+	private void nextChunk() throws IOException {
+		if (chunk + 1 >= chunks.length)
+			throw new EOFException();
+		chunk++;
+		buf = chunks[chunk];
+		buf.position(0);
+	}
+
+	// assemble a value that spans two chunks in the byte order of the file
+
+	private long straddle(int numBytes) throws IOException {
+		long v = 0;
+		for (int i = 0; i < numBytes; i++) {
+			long b = readByte() & 0xff;
+			if (isBigEndian())
+				v = (v << 8) | b;
+			else
+				v = v | (b << (8 * i));
+		}
+		return v;
+	}
+}
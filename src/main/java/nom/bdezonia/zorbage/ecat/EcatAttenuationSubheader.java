@@ -0,0 +1,244 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import nom.bdezonia.zorbage.coordinates.Cylindrical3dCoordinateSpace;
+import nom.bdezonia.zorbage.coordinates.Polar2dCoordinateSpace;
+
+/**
+ * The ecat 7 subheader of an attenuation (file type 3) matrix.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatAttenuationSubheader extends EcatSubheader {
+
+	short numRElements;
+	short numAngles;
+	short numZElements;
+	short ringDifference;
+	float xResolution;
+	float yResolution;
+	float zResolution;
+	float wResolution;
+	float xOffset;
+	float yOffset;
+	short storageOrder;
+	short span;
+	short[] zElements;
+	short attenType;
+	float xRadius;
+	float yRadius;
+	float tiltAngle;
+	float attenuationCoeff;
+	float attenuationMin;
+	float attenuationMax;
+	float skullThickness;
+	short numAdditionalAttenCoeff;
+	float[] additionalAttenCoeff;
+	float edgeFindingThreshold;
+
+	// only the reader makes these
+	
+	EcatAttenuationSubheader() { }
+
+	public short getNumRElements() {
+		return numRElements;
+	}
+
+	public short getNumAngles() {
+		return numAngles;
+	}
+
+	public short getNumZElements() {
+		return numZElements;
+	}
+
+	public short getRingDifference() {
+		return ringDifference;
+	}
+
+	public float getXResolution() {
+		return xResolution;
+	}
+
+	public float getYResolution() {
+		return yResolution;
+	}
+
+	public float getZResolution() {
+		return zResolution;
+	}
+
+	public float getWResolution() {
+		return wResolution;
+	}
+
+	public float getXOffset() {
+		return xOffset;
+	}
+
+	public float getYOffset() {
+		return yOffset;
+	}
+
+	public short getStorageOrder() {
+		return storageOrder;
+	}
+
+	public short getSpan() {
+		return span;
+	}
+
+	public short[] getZElements() {
+		return zElements.clone();
+	}
+
+	public short getAttenType() {
+		return attenType;
+	}
+
+	public float getXRadius() {
+		return xRadius;
+	}
+
+	public float getYRadius() {
+		return yRadius;
+	}
+
+	public float getTiltAngle() {
+		return tiltAngle;
+	}
+
+	public float getAttenuationCoeff() {
+		return attenuationCoeff;
+	}
+
+	public float getAttenuationMin() {
+		return attenuationMin;
+	}
+
+	public float getAttenuationMax() {
+		return attenuationMax;
+	}
+
+	public float getSkullThickness() {
+		return skullThickness;
+	}
+
+	public short getNumAdditionalAttenCoeff() {
+		return numAdditionalAttenCoeff;
+	}
+
+	public float[] getAdditionalAttenCoeff() {
+		return additionalAttenCoeff.clone();
+	}
+
+	public float getEdgeFindingThreshold() {
+		return edgeFindingThreshold;
+	}
+
+	@Override
+	double headerMin() {
+		return attenuationMin;
+	}
+
+	@Override
+	double headerMax() {
+		return attenuationMax;
+	}
+
+	@Override
+	void readFields(EcatInput data, boolean fileIsBigEndian) throws IOException {
+
+		double rUnit=0, thetaUnit=0, zUnit=0;
+		
+		dataType = Ecat.readShort(data, fileIsBigEndian);
+		numDimensions = Ecat.readShort(data, fileIsBigEndian);
+		dims = new long[numDimensions];
+		attenType = Ecat.readShort(data, fileIsBigEndian); // Added TJB 20170223
+		numRElements = Ecat.readShort(data, fileIsBigEndian);
+		numAngles = Ecat.readShort(data, fileIsBigEndian);   
+		numZElements = Ecat.readShort(data, fileIsBigEndian);
+		if (numDimensions > 0)
+			dims[0] = numRElements;
+		if (numDimensions > 1)
+			dims[1] = numAngles;
+		if (numDimensions > 2)
+			dims[2] = numZElements;
+		for (int i = 3; i < numDimensions; i++) {
+			dims[i] = 1;
+		}
+		ringDifference = Ecat.readShort(data, fileIsBigEndian);
+		xResolution = Ecat.readFloat(data, fileIsBigEndian);
+		yResolution = Ecat.readFloat(data, fileIsBigEndian);
+		zResolution = Ecat.readFloat(data, fileIsBigEndian);
+		wResolution = Ecat.readFloat(data, fileIsBigEndian);
+		scaleFactor = Ecat.readFloat(data, fileIsBigEndian);
+		xOffset = Ecat.readFloat(data, fileIsBigEndian);
+		yOffset = Ecat.readFloat(data, fileIsBigEndian);
+		xRadius = Ecat.readFloat(data, fileIsBigEndian);
+		yRadius = Ecat.readFloat(data, fileIsBigEndian);
+		tiltAngle = Ecat.readFloat(data, fileIsBigEndian);
+		attenuationCoeff = Ecat.readFloat(data, fileIsBigEndian);
+		attenuationMin = Ecat.readFloat(data, fileIsBigEndian);
+		attenuationMax = Ecat.readFloat(data, fileIsBigEndian);
+		signedDataFlag = attenuationMin < 0;
+		skullThickness = Ecat.readFloat(data, fileIsBigEndian);
+		numAdditionalAttenCoeff = Ecat.readShort(data, fileIsBigEndian);
+		additionalAttenCoeff = new float[8];
+		for (int i = 0; i < additionalAttenCoeff.length; i++) {
+			additionalAttenCoeff[i] = Ecat.readFloat(data, fileIsBigEndian);
+		}
+		edgeFindingThreshold = Ecat.readFloat(data, fileIsBigEndian);
+		storageOrder = Ecat.readShort(data, fileIsBigEndian);
+		span = Ecat.readShort(data, fileIsBigEndian);
+		zElements = new short[64];
+		for (int i = 0; i < zElements.length; i++) {
+			zElements[i] = Ecat.readShort(data, fileIsBigEndian);
+		}
+		data.skip(2 * 86);  // fillUnused
+		data.skip(2 * 50);  // fillUser
+		rUnit = xResolution;
+		thetaUnit = yResolution;
+		zUnit = zResolution;
+		if (numZElements > 1) {
+			coordSpace = new Cylindrical3dCoordinateSpace(
+					BigDecimal.valueOf(rUnit),
+					BigDecimal.valueOf(thetaUnit),
+					BigDecimal.valueOf(zUnit)
+					);
+			axisNames = new String[3];
+			axisNames[0] = "r";
+			axisNames[1] = "theta";
+			axisNames[2] = "z";
+		}
+		else {
+			coordSpace = new Polar2dCoordinateSpace(
+					BigDecimal.valueOf(rUnit),
+					BigDecimal.valueOf(thetaUnit)
+					);
+			axisNames = new String[2];
+			axisNames[0] = "r";
+			axisNames[1] = "theta";
+		}
+	}
+}
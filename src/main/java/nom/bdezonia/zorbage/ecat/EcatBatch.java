@@ -0,0 +1,273 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.misc.DataBundle;
+
+/**
+ * Reads many ecat files with a shared pool of threads. A fixed number of I/O
+ * threads open files and page in their frames while a separate pool of cpu
+ * threads decodes them. An I/O thread stays one frame ahead of the decoding
+ * of its file rather than paging in the whole file. Each I/O thread waits for
+ * its file to be decoded before taking the next one so at most ioConcurrency
+ * files are in memory at once. Results are handed to a listener file by file
+ * as they finish. Files that are not local (URLs) cannot be paged in ahead of
+ * time so their bytes are read while they are decoded.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatBatch {
+
+	private int ioConcurrency = 2;
+	private int cpuConcurrency = Runtime.getRuntime().availableProcessors();
+	private EcatOptions options = new EcatOptions();
+
+	/**
+	 * Make a batch reader with default settings.
+	 */
+	public EcatBatch() { }
+
+	/**
+	 * Returns the number of files that are read at the same time. The default is 2.
+	 */
+	public int getIoConcurrency() {
+		return ioConcurrency;
+	}
+
+	/**
+	 * Sets the number of files that are read at the same time.
+	 * 
+	 * @param threads
+	 */
+	public void setIoConcurrency(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("io concurrency must be at least 1");
+		this.ioConcurrency = threads;
+	}
+
+	/**
+	 * Returns the number of frames that are decoded at the same time. The
+	 * default is the number of available processors.
+	 */
+	public int getCpuConcurrency() {
+		return cpuConcurrency;
+	}
+
+	/**
+	 * Sets the number of frames that are decoded at the same time.
+	 * 
+	 * @param threads
+	 */
+	public void setCpuConcurrency(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("cpu concurrency must be at least 1");
+		this.cpuConcurrency = threads;
+	}
+
+	/**
+	 * Returns the options every file is read with.
+	 */
+	public EcatOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * Sets the options every file is read with. The executor of the options is
+	 * not used: frames are decoded on the batch's own cpu threads.
+	 * 
+	 * @param options
+	 */
+	public void setOptions(EcatOptions options) {
+		if (options == null)
+			throw new IllegalArgumentException("options cannot be null");
+		this.options = options;
+	}
+
+	/**
+	 * Returns the ecat files (names ending in .v or the gzipped .v.gz) in a
+	 * directory sorted by name.
+	 * 
+	 * @param directory
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<URI> listFiles(File directory) throws IOException {
+		
+		File[] files = directory.listFiles((dir, name) ->
+				name.toLowerCase().endsWith(".v") || name.toLowerCase().endsWith(".v.gz"));
+		
+		if (files == null)
+			throw new IOException("cannot list directory " + directory);
+		
+		List<URI> uris = new ArrayList<>();
+		
+		for (File f : files) {
+			if (f.isFile())
+				uris.add(f.toURI());
+		}
+		
+		Collections.sort(uris);
+		
+		return uris;
+	}
+
+	/**
+	 * Read every file in the list. Returns once all of them have been reported
+	 * to the listener.
+	 * 
+	 * @param files
+	 * @param listener
+	 * @throws InterruptedException If the calling thread is interrupted. Files
+	 *           that have not been started are then reported to the listener
+	 *           as cancelled and the files being read are interrupted.
+	 */
+	public void read(List<URI> files, EcatBatchListener listener) throws InterruptedException {
+		
+		ExecutorService io = Executors.newFixedThreadPool(ioConcurrency, threads("ecat-io"));
+		ExecutorService cpu = Executors.newFixedThreadPool(cpuConcurrency, threads("ecat-cpu"));
+		
+		try {
+			
+			for (URI uri : files) {
+				
+				io.execute(new ReadTask(uri, cpu, listener));
+			}
+			
+			io.shutdown();
+			
+			while (!io.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting
+			}
+			
+		} finally {
+			
+			// every file gets an outcome: the ones that never started are cancelled
+			
+			for (Runnable task : io.shutdownNow())
+				listener.cancelled(((ReadTask) task).uri);
+			
+			cpu.shutdownNow();
+		}
+	}
+
+	// a file waiting for an I/O thread
+	
+	private class ReadTask implements Runnable {
+		
+		private final URI uri;
+		private final ExecutorService cpu;
+		private final EcatBatchListener listener;
+		
+		ReadTask(URI uri, ExecutorService cpu, EcatBatchListener listener) {
+			this.uri = uri;
+			this.cpu = cpu;
+			this.listener = listener;
+		}
+		
+		@Override
+		public void run() {
+			readOne(uri, cpu, listener);
+		}
+	}
+	
+	// read one file: open and page in on this (I/O) thread, decode on the cpu pool
+	
+	private void readOne(URI uri, ExecutorService cpu, EcatBatchListener listener) {
+		
+		DataBundle images;
+		
+		try (EcatFile file = EcatFile.open(uri, options)) {
+			
+			// open() read the headers. page in the first frame before decoding
+			//   starts and then each next frame while the one before it decodes.
+			
+			file.prefetch(0);
+			
+			List<CompletableFuture<DimensionedDataSource<?>>> frames = file.datasetsAsync(cpu);
+			
+			CompletableFuture<DataBundle> bundle = file.bundleOf(frames);
+			
+			for (int i = 0; i + 1 < frames.size() && !bundle.isDone(); i++) {
+				
+				file.prefetch(i + 1);
+				
+				// get() rather than join() so that shutting the batch down interrupts the wait
+				
+				try {
+					frames.get(i).get();
+				} catch (ExecutionException | CancellationException e) {
+					break;  // the bundle fails with the frame's error
+				}
+			}
+			
+			images = bundle.get();
+			
+		} catch (ExecutionException e) {
+			
+			listener.failed(uri, EcatFile.cause(e.getCause()));
+			
+			return;
+			
+		} catch (InterruptedException e) {
+			
+			Thread.currentThread().interrupt();
+			
+			listener.failed(uri, e);
+			
+			return;
+			
+		} catch (Throwable t) {
+			
+			listener.failed(uri, EcatFile.cause(t));
+			
+			return;
+		}
+		
+		listener.loaded(uri, images);
+	}
+
+	// daemon threads so an abandoned batch never keeps the jvm alive
+	
+	private static ThreadFactory threads(String name) {
+		
+		AtomicInteger count = new AtomicInteger();
+		
+		return r -> {
+			Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+}
@@ -0,0 +1,61 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.net.URI;
+import java.util.concurrent.CancellationException;
+
+import nom.bdezonia.zorbage.misc.DataBundle;
+
+/**
+ * Receives the outcome of each file of an {@link EcatBatch} as soon as that
+ * file is done. The methods are called from the batch's I/O threads, several
+ * at a time.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public interface EcatBatchListener {
+
+	/**
+	 * A file was read completely.
+	 * 
+	 * @param fileURI
+	 * @param datasets
+	 */
+	void loaded(URI fileURI, DataBundle datasets);
+
+	/**
+	 * A file could not be read. The other files of the batch carry on.
+	 * 
+	 * @param fileURI
+	 * @param error
+	 */
+	void failed(URI fileURI, Throwable error);
+
+	/**
+	 * A file was not read because the batch was interrupted before the file
+	 * was started. By default this is reported as a failure with a
+	 * CancellationException.
+	 * 
+	 * @param fileURI
+	 */
+	default void cancelled(URI fileURI) {
+		failed(fileURI, new CancellationException("the batch was interrupted before "+fileURI+" was read"));
+	}
+}
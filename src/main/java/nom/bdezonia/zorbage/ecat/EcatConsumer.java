@@ -0,0 +1,45 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+
+/**
+ * Receives the pieces (whole frames or single planes) of a streamed ecat
+ * file one at a time. See {@link EcatFile#streamFrames} and
+ * {@link EcatFile#streamPlanes}.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public interface EcatConsumer {
+
+	/**
+	 * Called once per piece in file order. The reader keeps no reference to
+	 * the data so it can be garbage collected as soon as the consumer is done
+	 * with it.
+	 * 
+	 * @param index The index of the matrix (frame) the piece comes from.
+	 * @param firstPlane The matrix plane that is plane 0 of the piece.
+	 * @param data The decoded pixels.
+	 * @throws IOException
+	 */
+	void accept(int index, long firstPlane, DimensionedDataSource<?> data) throws IOException;
+}
@@ -0,0 +1,218 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The matrix directory of an ecat file. The directory is a chain of 512 byte
+ * nodes that each describe up to 31 matrices (frames). Matrices can be looked
+ * up by matrix number so any of them can be reached with a single seek.
+ *
+ * @author Barry DeZonia
+ *
+ */
+class EcatDirectory {
+
+	// the first directory node always lives in block 2 (blocks count from 1)
+
+	static final int FIRST_NODE_BLOCK = 2;
+
+	// the number of ints in one 512 byte directory node
+
+	static final int NODE_INTS = 128;
+
+	// the matrix number bits that hold the data set number
+
+	private static final int DATA_BITS = matrixNumber(0, 0, 0, 7, 0);
+
+	/**
+	 * One matrix entry of a directory node.
+	 */
+	static class Entry {
+
+		final int matrixNumber;
+		final int subheaderBlockNum;
+		final int lastBlock;
+		final int status;
+
+		Entry(int matrixNumber, int subheaderBlockNum, int lastBlock, int status) {
+			this.matrixNumber = matrixNumber;
+			this.subheaderBlockNum = subheaderBlockNum;
+			this.lastBlock = lastBlock;
+			this.status = status;
+		}
+
+		int frame() {
+			return EcatDirectory.frame(matrixNumber);
+		}
+
+		int plane() {
+			return EcatDirectory.plane(matrixNumber);
+		}
+
+		int gate() {
+			return EcatDirectory.gate(matrixNumber);
+		}
+
+		int bed() {
+			return EcatDirectory.bed(matrixNumber);
+		}
+
+		/**
+		 * The number of bytes the matrix (subheader plus data) spans.
+		 */
+		long numBytes() {
+			return 512L * (lastBlock - subheaderBlockNum + 1);
+		}
+
+		/**
+		 * The byte offset of the entry's subheader.
+		 */
+		long subheaderOffset() {
+			return 512L * (subheaderBlockNum - 1);
+		}
+	}
+
+	private final List<Entry> entries;
+	private final Map<Integer, Integer> index;
+
+	EcatDirectory(List<Entry> entries) {
+		this.entries = entries;
+		this.index = new HashMap<>();
+		for (int i = 0; i < entries.size(); i++) {
+			index.putIfAbsent(entries.get(i).matrixNumber & ~DATA_BITS, i);
+		}
+	}
+
+	/**
+	 * Read the directory by following the chain of nodes that starts at block
+	 * 2 of the file. Each node names the block of the next one and the chain
+	 * ends when it returns to block 2.
+	 *
+	 * @param data
+	 * @param fileIsBigEndian
+	 * @return
+	 * @throws IOException
+	 */
+	static EcatDirectory read(EcatInput data, boolean fileIsBigEndian) throws IOException {
+
+		return read(data, fileIsBigEndian, new int[NODE_INTS]);
+	}
+
+	/**
+	 * Read the directory decoding every node into the given scratch array.
+	 * Readers that open many files pass the same array each time.
+	 *
+	 * @param data
+	 * @param fileIsBigEndian
+	 * @param node Scratch space of at least NODE_INTS ints.
+	 * @return
+	 * @throws IOException
+	 */
+	static EcatDirectory read(EcatInput data, boolean fileIsBigEndian, int[] node) throws IOException {
+
+		List<Entry> entries = new ArrayList<>();
+
+		Set<Integer> visited = new HashSet<>();
+
+		int block = FIRST_NODE_BLOCK;
+
+		while (visited.add(block)) {
+
+			// a node is 128 ints in the byte order of the file: a 4 int
+			// header (numUnused, next, prev, numUsed) then 31 4 int entries
+
+			data.seek(512L * (block - 1));
+			data.readInts(node, 0, NODE_INTS, data.order());
+			int nextDirNodeAddress = node[1];
+			for (int i = 4; i < NODE_INTS; i += 4) {
+
+				int matrixNumber = node[i];
+				int subheaderBlockNum = node[i+1];
+				int lastBlock = node[i+2];
+				int status = node[i+3];
+
+				// unused slots are zero filled and deleted matrices have a status of -1
+
+				if (matrixNumber != 0 && subheaderBlockNum > 0 && status != -1) {
+					entries.add(new Entry(matrixNumber, subheaderBlockNum, lastBlock, status));
+				}
+			}
+
+			if (nextDirNodeAddress <= 0)
+				break;
+
+			block = nextDirNodeAddress;
+		}
+
+		return new EcatDirectory(entries);
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	Entry get(int i) {
+		return entries.get(i);
+	}
+
+	/**
+	 * Find the entry for a matrix. Frames, planes and gates count from 1 and
+	 * beds count from 0 just like in the file.
+	 *
+	 * @return The entry's index or -1 if the directory does not list it.
+	 */
+	int indexOf(int frame, int plane, int gate, int bed) {
+		Integer i = index.get(matrixNumber(frame, plane, gate, 0, bed));
+		return i == null ? -1 : i;
+	}
+
+	// The ecat 7 matrix number packing (see mat_numcod() in the CTI sources)
+
+	static int matrixNumber(int frame, int plane, int gate, int data, int bed) {
+		return (frame & 0x1FF) | ((bed & 0xF) << 12) | ((plane & 0xFF) << 16) | ((plane & 0x300) << 1) |
+				((gate & 0x3F) << 24) | ((data & 0x3) << 30) | ((data & 0x4) << 9);
+	}
+
+	static int frame(int matrixNumber) {
+		return matrixNumber & 0x1FF;
+	}
+
+	static int plane(int matrixNumber) {
+		return ((matrixNumber >> 16) & 0xFF) | ((matrixNumber >> 1) & 0x300);
+	}
+
+	static int gate(int matrixNumber) {
+		return (matrixNumber >> 24) & 0x3F;
+	}
+
+	static int data(int matrixNumber) {
+		return ((matrixNumber >> 30) & 0x3) | ((matrixNumber >> 9) & 0x4);
+	}
+
+	static int bed(int matrixNumber) {
+		return (matrixNumber >> 12) & 0xF;
+	}
+}
@@ -0,0 +1,1363 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nom.bdezonia.zorbage.algebra.Allocatable;
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.algebra.HighPrecRepresentation;
+import nom.bdezonia.zorbage.algorithm.ScaleByDouble;
+import nom.bdezonia.zorbage.coordinates.CoordinateSpace;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+import nom.bdezonia.zorbage.datasource.IndexedDataSource;
+import nom.bdezonia.zorbage.misc.DataBundle;
+import nom.bdezonia.zorbage.type.real.float32.Float32Member;
+import nom.bdezonia.zorbage.type.real.float64.Float64Member;
+import nom.bdezonia.zorbage.type.real.highprec.HighPrecisionMember;
+
+/**
+ * An open ecat file. Opening parses the main header and the matrix directory
+ * only. Each frame is decoded the first time it is asked for and is then kept
+ * for later requests. Viewers that only look at a few frames of a large
+ * dynamic study avoid decoding the rest.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class EcatFile implements Closeable {
+
+	private final URI uri;
+	private final EcatOptions options;
+	private final EcatMainHeader mainHeader;
+	private final EcatDirectory directory;
+	private final String[] names;
+	private final EcatSubheader[] subheaders;
+	private final DimensionedDataSource[] datasets;
+	private final Allocatable[] types;
+	private final EcatStats[] stats;
+	private final boolean[] loaded;
+	private final PixelDecoder decoder;
+	private final AtomicLong bytesRead = new AtomicLong();
+	private EcatInput data;
+	
+	// the identity of a local file (for the frame cache)
+	
+	private final String path;
+	private final long size;
+	private final long modified;
+
+	/**
+	 * 
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static EcatFile open(String filename) throws IOException {
+		
+		return open(filename, new EcatOptions());
+	}
+	
+	/**
+	 * 
+	 * @param filename
+	 * @param options
+	 * @return
+	 * @throws IOException
+	 */
+	public static EcatFile open(String filename, EcatOptions options) throws IOException {
+		
+		return open(Ecat.fileURI(filename), options);
+	}
+	
+	/**
+	 * 
+	 * @param fileURI
+	 * @return
+	 * @throws IOException
+	 */
+	public static EcatFile open(URI fileURI) throws IOException {
+		
+		return open(fileURI, new EcatOptions());
+	}
+	
+	/**
+	 * 
+	 * @param fileURI
+	 * @param options
+	 * @return
+	 * @throws IOException
+	 */
+	public static EcatFile open(URI fileURI, EcatOptions options) throws IOException {
+		
+		return open(fileURI, options, new PixelDecoder(), new int[EcatDirectory.NODE_INTS]);
+	}
+	
+	// open a file that decodes with the given (possibly shared) decoder and reads
+	//   its directory through the given scratch array. Used by EcatReader to carry
+	//   its buffers from one file to the next.
+	
+	static EcatFile open(URI fileURI, EcatOptions options, PixelDecoder decoder, int[] dirNode) throws IOException {
+		
+		// local files are memory mapped (or inflated when gzipped) while other
+		//   URIs fall back to a stream
+
+		EcatInput data = EcatInput.open(fileURI, options.getCompressedIndex());
+		
+		try {
+			
+			return new EcatFile(fileURI, options, data, decoder, dirNode);
+			
+		} catch (IOException | RuntimeException e) {
+			
+			data.close();
+			
+			throw e;
+		}
+	}
+	
+	private EcatFile(URI uri, EcatOptions options, EcatInput data, PixelDecoder decoder, int[] dirNode) throws IOException {
+		
+		this.uri = uri;
+		this.options = options;
+		this.data = data;
+		this.decoder = decoder;
+		
+		if ("file".equals(uri.getScheme())) {
+			
+			File file = new File(uri);
+			
+			path = file.getAbsolutePath();
+			size = file.length();
+			modified = file.lastModified();
+		}
+		else {
+			
+			path = null;
+			size = 0;
+			modified = 0;
+		}
+		
+		// a valid sidecar index saves reading any headers from the file
+		
+		boolean indexed = path != null && options.getSidecarIndex();
+		
+		EcatIndex index = indexed ? EcatIndex.read(EcatIndex.sidecar(new File(path)), size, modified) : null;
+		
+		if (index != null) {
+			
+			mainHeader = index.mainHeader;
+			
+			directory = index.directory;
+			
+			data.order(mainHeader.fileIsBigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		}
+		else {
+		
+			mainHeader = EcatMainHeader.read(data);
+			
+			directory = EcatDirectory.read(data, mainHeader.fileIsBigEndian, dirNode);
+		}
+		
+		int count = directory.size();
+		
+		names = new String[count];
+		subheaders = index != null ? index.subheaders : new EcatSubheader[count];
+		datasets = new DimensionedDataSource[count];
+		types = new Allocatable[count];
+		stats = new EcatStats[count];
+		loaded = new boolean[count];
+
+		// the file counts frames and gates from 1 but our names count from 0
+		
+		for (int i = 0; i < count; i++) {
+			EcatDirectory.Entry entry = directory.get(i);
+			int bedpos = entry.bed();
+			int gate = Math.max(0, entry.gate() - 1);
+			int f = Math.max(0, entry.frame() - 1);
+			names[i] = "Bed " + bedpos + " Gate " + gate + " Frame " + f;
+		}
+		
+		if (indexed && index == null) {
+			
+			writeIndex();
+		}
+		
+		if (count > 0 && !EcatSubheader.isSupported(mainHeader.fileType)) {
+			
+			options.getListener().fileTypeUnsupported(uri, mainHeader.fileType);
+		}
+	}
+
+	/**
+	 * Returns the number of datasets (bed / gate / frame combinations) in the file.
+	 */
+	public int numDatasets() {
+		return names.length;
+	}
+
+	/**
+	 * Returns the name the dataset at the given index will be given.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public String datasetName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * Returns the index of the dataset with the given matrix coordinates or -1
+	 * if the file has no such matrix. As in the file frames, planes and gates
+	 * count from 1 and beds count from 0. Image files (type 7) store whole
+	 * volumes at plane 1.
+	 * 
+	 * @param frame
+	 * @param plane
+	 * @param gate
+	 * @param bed
+	 * @return
+	 */
+	public int indexOf(int frame, int plane, int gate, int bed) {
+		return directory.indexOf(frame, plane, gate, bed);
+	}
+
+	/**
+	 * Returns the ecat matrix number of the dataset at the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int matrixNumber(int index) {
+		return directory.get(index).matrixNumber;
+	}
+
+	/**
+	 * Returns the options the file was opened with.
+	 */
+	public EcatOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * Returns the main header of the file.
+	 */
+	public EcatMainHeader getMainHeader() {
+		return mainHeader;
+	}
+
+	/**
+	 * Returns the subheader of the dataset at the given index. Only the
+	 * subheader is read: no pixel data is touched. Returns null if the file
+	 * type is not supported.
+	 * 
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized EcatSubheader subheader(int index) throws IOException {
+		
+		if (subheaders[index] == null) {
+			
+			seek(directory.get(index).subheaderOffset());
+			
+			subheaders[index] = EcatSubheader.read(data, mainHeader.fileType, mainHeader.fileIsBigEndian);
+		}
+		
+		return subheaders[index];
+	}
+
+	/**
+	 * Returns true if the dataset at the given index has already been decoded.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public synchronized boolean isLoaded(int index) {
+		return loaded[index];
+	}
+	
+	/**
+	 * Returns the dataset at the given index decoding it first if needed.
+	 * Returns null if the matrix holds no pixel data.
+	 * 
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized DimensionedDataSource<?> dataset(int index) throws IOException {
+		
+		if (!loaded[index]) {
+			
+			decode(index);
+			
+			loaded[index] = true;
+		}
+		
+		return datasets[index];
+	}
+
+	/**
+	 * Returns the statistics of the dataset at the given index. They are only
+	 * gathered when the statistics option is on (see
+	 * {@link EcatOptions#setStatistics}). Returns null if they were not
+	 * gathered or the dataset has not been decoded yet.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public synchronized EcatStats stats(int index) {
+		return stats[index];
+	}
+
+	/**
+	 * Decodes part of the dataset at the given index. Only the pixels inside
+	 * the region are allocated and read. The result is not kept: every call
+	 * decodes again. Element (0,0,0) of the result is element (x,y,firstPlane)
+	 * of the matrix and the coordinate space is the matrix's space moved so
+	 * its origin is at that element. Only image spaces can be moved: a region
+	 * of a sinogram (scan, attenuation or normalization) matrix that does not
+	 * start at the matrix origin has a null coordinate space. Returns null if
+	 * the matrix holds no pixel data.
+	 * 
+	 * @param index
+	 * @param region
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized DimensionedDataSource<?> dataset(int index, EcatRegion region) throws IOException {
+		
+		EcatSubheader sh = subheader(index);
+		
+		if (sh == null || sh.dataType <= 0)
+			return null;
+		
+		long pixels = directory.get(index).subheaderOffset() + 512L * sh.numBlocks();
+		
+		seek(pixels);
+
+		return decodePixels(index, sh, data, decoder, region, pixels).ds;
+	}
+
+	/**
+	 * Decodes the datasets one at a time and hands each to the consumer. Unlike
+	 * dataset() or bundle() nothing is kept so at most one frame is in memory
+	 * at a time (plus whatever the consumer holds on to). The region option
+	 * is honored.
+	 * 
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public synchronized void streamFrames(EcatConsumer consumer) throws IOException {
+		
+		for (int i = 0; i < numDatasets(); i++) {
+			
+			EcatSubheader sh = subheader(i);
+			
+			if (sh == null || sh.dataType <= 0)
+				continue;
+			
+			long pixels = directory.get(i).subheaderOffset() + 512L * sh.numBlocks();
+			
+			seek(pixels);
+			
+			EcatRegion region = options.getRegion();
+			
+			long firstPlane = region == null ? 0 : region.getFirstPlane();
+			
+			consumer.accept(i, firstPlane, decodePixels(i, sh, data, decoder, region, pixels).ds);
+		}
+	}
+	
+	/**
+	 * Decodes the datasets one plane at a time and hands each plane to the
+	 * consumer. Memory use is bounded by a single plane. The planes of a
+	 * multi-plane matrix keep a third dimension of size 1. The region option
+	 * is honored: only its window and its planes are decoded.
+	 * 
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public synchronized void streamPlanes(EcatConsumer consumer) throws IOException {
+		
+		long numPlanes = Math.max(1, (int) mainHeader.numPlanes);
+		
+		for (int i = 0; i < numDatasets(); i++) {
+			
+			EcatSubheader sh = subheader(i);
+			
+			if (sh == null || sh.dataType <= 0)
+				continue;
+			
+			long pixels = directory.get(i).subheaderOffset() + 512L * sh.numBlocks();
+			
+			EcatRegion region = options.getRegion();
+			
+			if (region == null)
+				region = new EcatRegion(0, 0, sh.dims[0], sh.dims[1], 0, numPlanes);
+			
+			region = region.clip(sh.dims[0], sh.dims[1], numPlanes);
+			
+			long end = region.getFirstPlane() + region.getNumPlanes();
+			
+			// planes are visited in file order so the input only moves forward
+			
+			seek(pixels);
+			
+			for (long p = region.getFirstPlane(); p < end; p++) {
+				
+				consumer.accept(i, p, decodePixels(i, sh, data, decoder, region.plane(p), pixels).ds);
+			}
+		}
+	}
+
+	/**
+	 * Run a reduction over the planes of some datasets without decoding whole
+	 * frames. A plane's state lives from its first frame to its last so only
+	 * about a frame's worth of state is held. With an executor in the options
+	 * and a local file the planes are reduced in parallel, each through a
+	 * private view of the mapped file. Otherwise the datasets are read in a
+	 * single pass. The region option is not used.
+	 * 
+	 * @param indices The datasets to reduce. They must all have pixels and
+	 *   the same plane size.
+	 * @param planes Which planes to reduce or null for all of them.
+	 * @param reducer
+	 * @throws IOException
+	 */
+	<S> void reducePlanes(int[] indices, boolean[] planes, PlaneReducer<S> reducer) throws IOException {
+		
+		EcatSubheader[] shs = new EcatSubheader[indices.length];
+		long[] bases = new long[indices.length];
+		BufferEcatInput file;
+		
+		synchronized (this) {
+			
+			for (int k = 0; k < indices.length; k++) {
+				
+				EcatSubheader sh = subheader(indices[k]);
+				
+				if (sh == null || sh.dataType <= 0)
+					throw new IllegalArgumentException("dataset "+indices[k]+" has no pixels");
+				
+				shs[k] = sh;
+				bases[k] = directory.get(indices[k]).subheaderOffset() + 512L * sh.numBlocks();
+			}
+			
+			file = data instanceof BufferEcatInput ? (BufferEcatInput) data : null;
+		}
+		
+		if (indices.length == 0)
+			return;
+		
+		long planeSize = shs[0].dims[0] * shs[0].dims[1];
+		
+		for (EcatSubheader sh : shs) {
+			if (sh.dims[0] * sh.dims[1] != planeSize)
+				throw new IllegalArgumentException("datasets do not have the same plane size");
+		}
+		
+		long numPlanes = Math.max(1, (int) mainHeader.numPlanes);
+		
+		Executor executor = options.getExecutor();
+		
+		if (executor == null || file == null) {
+			
+			// one pass over the input. streams can only go forward.
+			
+			synchronized (this) {
+				
+				Object[] states = new Object[(int) numPlanes];
+				
+				for (int p = 0; p < numPlanes; p++) {
+					if (planes == null || planes[p])
+						states[p] = reducer.start(p);
+				}
+				
+				for (int k = 0; k < indices.length; k++) {
+					
+					for (int p = 0; p < numPlanes; p++) {
+						
+						if (planes == null || planes[p]) {
+							
+							seek(bases[k] + PixelDecoder.bytesPerPixel(shs[k].dataType) * p * planeSize);
+							
+							reducePlane(data, decoder, shs[k], planeSize, k, (S) states[p], reducer);
+						}
+					}
+				}
+				
+				for (int p = 0; p < numPlanes; p++) {
+					if (planes == null || planes[p])
+						reducer.finish(p, (S) states[p]);
+				}
+			}
+			
+			return;
+		}
+		
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		
+		for (long p = 0; p < numPlanes; p++) {
+			
+			if (planes != null && !planes[(int) p])
+				continue;
+			
+			long plane = p;
+			
+			tasks.add(CompletableFuture.runAsync(() -> {
+				
+				BufferEcatInput in = file.duplicate();
+				
+				PixelDecoder dec = PixelDecoder.forThread();
+				
+				S state = reducer.start(plane);
+				
+				try {
+					
+					for (int k = 0; k < indices.length; k++) {
+						
+						in.seek(bases[k] + PixelDecoder.bytesPerPixel(shs[k].dataType) * plane * planeSize);
+						
+						reducePlane(in, dec, shs[k], planeSize, k, state, reducer);
+					}
+					
+				} catch (IOException e) {
+					
+					throw new CompletionException(e);
+				}
+				
+				reducer.finish(plane, state);
+				
+			}, executor));
+		}
+		
+		try {
+			
+			CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+			
+		} catch (CompletionException e) {
+			
+			Throwable t = cause(e);
+			
+			if (t instanceof IOException)
+				throw (IOException) t;
+			if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			if (t instanceof Error)
+				throw (Error) t;
+			throw e;
+		}
+	}
+	
+	// hand one plane of a dataset to a reducer. the input must be positioned at the
+	//   plane's first pixel.
+	
+	private static <S> void reducePlane(EcatInput in, PixelDecoder decoder, EcatSubheader sh, long planeSize,
+											int frame, S state, PlaneReducer<S> reducer)
+		throws IOException
+	{
+		float scaleFactor = sh.scaleFactor;
+		
+		boolean scaled = scaleFactor != 0 && scaleFactor != 1 && Math.abs(scaleFactor) > 0.00001;
+		
+		int block = (int) Math.min(planeSize, PixelDecoder.MAX_BLOCK);
+		
+		for (int offset = 0; offset < planeSize; offset += block) {
+			
+			int n = (int) Math.min(block, planeSize - offset);
+			
+			decoder.readDoubles(in, sh.dataType, sh.signedDataFlag, n);
+			
+			double[] values = decoder.doubles();
+			
+			if (scaled) {
+				for (int i = 0; i < n; i++)
+					values[i] *= scaleFactor;
+			}
+			
+			reducer.add(state, frame, offset, values, n);
+		}
+	}
+
+	/**
+	 * Open a file on an executor.
+	 * 
+	 * @param fileURI
+	 * @param options
+	 * @param executor
+	 * @return A future that completes with the open file or with the error
+	 *         that stopped it from opening.
+	 */
+	public static CompletableFuture<EcatFile> openAsync(URI fileURI, EcatOptions options, Executor executor) {
+		
+		CompletableFuture<EcatFile> result = new CompletableFuture<>();
+		
+		try {
+			
+			executor.execute(() -> {
+				
+				if (result.isDone())
+					return;
+				
+				try {
+					
+					EcatFile file = open(fileURI, options);
+					
+					// close the file if the caller gave up on it in the meantime
+					
+					if (!result.complete(file))
+						file.close();
+					
+				} catch (Throwable t) {
+					
+					result.completeExceptionally(t);
+				}
+			});
+			
+		} catch (RejectedExecutionException e) {
+			
+			result.completeExceptionally(e);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Decode the dataset at the given index on an executor. Cancelling the
+	 * future before its task starts keeps the frame from being decoded. Local
+	 * files decode several frames at once when several of these tasks run at
+	 * the same time. On java 21 and later a virtual thread per task executor
+	 * works well here. Streams are decoded one frame at a time under the file
+	 * lock; use datasetsAsync() to read all the frames of a stream in order.
+	 * 
+	 * @param index
+	 * @param executor
+	 * @return A future that completes with the dataset (or null if the matrix
+	 *         holds no pixel data) or with the error that stopped the decoding.
+	 */
+	public CompletableFuture<DimensionedDataSource<?>> datasetAsync(int index, Executor executor) {
+		
+		CompletableFuture<DimensionedDataSource<?>> result = new CompletableFuture<>();
+		
+		try {
+			
+			executor.execute(() -> {
+				
+				if (result.isDone())
+					return;
+				
+				try {
+					
+					result.complete(decodeUnlocked(index));
+					
+				} catch (Throwable t) {
+					
+					result.completeExceptionally(t);
+				}
+			});
+			
+		} catch (RejectedExecutionException e) {
+			
+			result.completeExceptionally(e);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Decode every dataset in the file on an executor. Each frame has its own
+	 * future that completes as soon as that frame is decoded, so a caller can
+	 * start working with early frames while later ones are still loading.
+	 * Local files decode one frame per task. Streams, gzipped files and remote
+	 * files can only be read front to back so their frames are decoded in
+	 * index order by a single task.
+	 * 
+	 * @param executor
+	 * @return The futures in dataset index order.
+	 */
+	public List<CompletableFuture<DimensionedDataSource<?>>> datasetsAsync(Executor executor) {
+		
+		List<CompletableFuture<DimensionedDataSource<?>>> futures = new ArrayList<>();
+		
+		boolean mapped;
+		
+		synchronized (this) {
+			
+			mapped = data instanceof BufferEcatInput;
+		}
+		
+		if (mapped) {
+			
+			for (int i = 0; i < numDatasets(); i++) {
+				
+				futures.add(datasetAsync(i, executor));
+			}
+			
+			return futures;
+		}
+		
+		for (int i = 0; i < numDatasets(); i++) {
+			
+			futures.add(new CompletableFuture<>());
+		}
+		
+		try {
+			
+			executor.execute(() -> decodeInOrder(futures));
+			
+		} catch (RejectedExecutionException e) {
+			
+			for (CompletableFuture<DimensionedDataSource<?>> future : futures)
+				future.completeExceptionally(e);
+		}
+		
+		return futures;
+	}
+	
+	// Decode the frames of a stream one after the other so the input only ever
+	//   moves forward. Frames whose futures are already done (cancelled) are
+	//   skipped. A frame that fails does not stop the frames after it.
+	
+	private void decodeInOrder(List<CompletableFuture<DimensionedDataSource<?>>> futures) {
+		
+		for (int i = 0; i < futures.size(); i++) {
+			
+			CompletableFuture<DimensionedDataSource<?>> future = futures.get(i);
+			
+			if (future.isDone())
+				continue;
+			
+			try {
+				
+				future.complete(dataset(i));
+				
+			} catch (Throwable t) {
+				
+				future.completeExceptionally(t);
+			}
+		}
+	}
+
+	/**
+	 * Decode every dataset in the file on an executor and gather them in a
+	 * DataBundle in index order. If any frame fails the future fails with that
+	 * frame's error and the frames that have not started yet are cancelled.
+	 * Cancelling the returned future also cancels the frames that have not
+	 * started yet.
+	 * 
+	 * @param executor
+	 * @return
+	 */
+	public CompletableFuture<DataBundle> bundleAsync(Executor executor) {
+		
+		return bundleOf(datasetsAsync(executor));
+	}
+	
+	// gather the frames of datasetsAsync() in a DataBundle
+	
+	CompletableFuture<DataBundle> bundleOf(List<CompletableFuture<DimensionedDataSource<?>>> frames) {
+		
+		CompletableFuture<DataBundle> result = new CompletableFuture<>();
+		
+		for (CompletableFuture<DimensionedDataSource<?>> frame : frames) {
+			
+			frame.whenComplete((ds, err) -> {
+				
+				if (err != null)
+					result.completeExceptionally(cause(err));
+			});
+		}
+		
+		CompletableFuture.allOf(frames.toArray(new CompletableFuture<?>[0])).whenComplete((v, err) -> {
+			
+			if (err != null)
+				return;
+			
+			DataBundle images = new DataBundle();
+			
+			for (int i = 0; i < frames.size(); i++) {
+				
+				DimensionedDataSource<?> ds = frames.get(i).join();
+				
+				if (ds != null)
+					Ecat.merge(images, ds, type(i));
+			}
+			
+			result.complete(images);
+		});
+		
+		// on failure or cancellation stop whatever has not started yet
+		
+		result.whenComplete((images, err) -> {
+			
+			if (err != null) {
+				
+				for (CompletableFuture<DimensionedDataSource<?>> frame : frames)
+					frame.cancel(false);
+			}
+		});
+		
+		return result;
+	}
+
+	/**
+	 * Decodes every dataset in the file and returns them in a DataBundle.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public DataBundle bundle() throws IOException {
+		
+		DataBundle images = new DataBundle();
+		
+		loadAll(images);
+		
+		return images;
+	}
+
+	/**
+	 * Reads all the headers of the file and no pixel data.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized EcatHeaders headers() throws IOException {
+		
+		EcatSubheader[] all = new EcatSubheader[numDatasets()];
+		
+		for (int i = 0; i < all.length; i++) {
+			all[i] = subheader(i);
+		}
+		
+		return new EcatHeaders(mainHeader, names.clone(), all);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		data.close();
+	}
+
+	// decode every dataset in order, merging each one into the bundle as it is done
+	
+	void loadAll(DataBundle images) throws IOException {
+		
+		Executor executor = options.getExecutor();
+		
+		if (executor != null) {
+			
+			decodeInParallel(executor);
+		}
+		
+		for (int i = 0; i < numDatasets(); i++) {
+			
+			DimensionedDataSource<?> ds = dataset(i);
+			
+			if (ds != null) {
+				
+				Ecat.merge(images, ds, type(i));
+			}
+		}
+	}
+	
+	// Decode all the frames that are not loaded yet as tasks on the executor. Frames
+	//   that fail are left unloaded: the serial pass in loadAll() then decodes them
+	//   again and reports the error in frame order.
+	
+	private void decodeInParallel(Executor executor) {
+		
+		// streams can only be read front to back
+		
+		synchronized (this) {
+			
+			if (!(data instanceof BufferEcatInput))
+				return;
+		}
+		
+		int count = numDatasets();
+		
+		CompletableFuture<?>[] tasks = new CompletableFuture<?>[count];
+		
+		for (int i = 0; i < count; i++) {
+			
+			int index = i;
+			
+			tasks[i] = CompletableFuture.runAsync(() -> {
+				
+				try {
+					
+					decodeUnlocked(index);
+					
+				} catch (IOException e) {
+					
+					throw new CompletionException(e);
+				}
+				
+			}, executor);
+		}
+		
+		for (int i = 0; i < count; i++) {
+			
+			try {
+				
+				tasks[i].join();
+				
+			} catch (CompletionException e) {
+				
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+			}
+		}
+	}
+	
+	// Like dataset() but the file lock is only held to look up the subheader and to
+	//   store the result. The pixels are decoded through a private view of the mapped
+	//   file so any number of frames can be decoded at once. Streams can only be read
+	//   front to back so they fall back to dataset().
+	
+	private DimensionedDataSource<?> decodeUnlocked(int index) throws IOException {
+		
+		EcatSubheader sh;
+		BufferEcatInput file;
+		long pos;
+		
+		synchronized (this) {
+			
+			if (loaded[index] || !(data instanceof BufferEcatInput) || fromCache(index))
+				return dataset(index);
+			
+			sh = subheader(index);
+			
+			if (sh == null || sh.dataType <= 0) {
+				
+				loaded[index] = true;
+				
+				return null;
+			}
+			
+			file = (BufferEcatInput) data;
+			
+			pos = directory.get(index).subheaderOffset() + 512L * sh.numBlocks();
+		}
+		
+		BufferEcatInput in = file.duplicate();
+		
+		in.seek(pos);
+		
+		Decoded d = decodePixels(index, sh, in, PixelDecoder.forThread(), options.getRegion(), pos);
+		
+		synchronized (this) {
+			
+			// another thread may have finished the same frame first
+			
+			if (!loaded[index]) {
+				
+				datasets[index] = d.ds;
+				types[index] = d.type;
+				stats[index] = d.stats;
+				loaded[index] = true;
+				
+				toCache(index, d);
+			}
+			
+			return datasets[index];
+		}
+	}
+	
+	private synchronized Allocatable type(int index) {
+		return types[index];
+	}
+	
+	// strip the CompletionException wrappers that CompletableFuture adds
+	
+	static Throwable cause(Throwable t) {
+		while (t instanceof CompletionException && t.getCause() != null)
+			t = t.getCause();
+		return t;
+	}
+	
+	// page in one matrix (local files only) so decoding it is cpu bound
+	
+	void prefetch(int index) {
+		BufferEcatInput mapped;
+		EcatDirectory.Entry entry;
+		synchronized (this) {
+			if (!(data instanceof BufferEcatInput) || index < 0 || index >= numDatasets())
+				return;
+			mapped = (BufferEcatInput) data;
+			entry = directory.get(index);
+		}
+		mapped.load(entry.subheaderOffset(), entry.numBytes());
+	}
+	
+	// the number of pixel bytes decoded so far
+	
+	long bytesRead() {
+		return bytesRead.get();
+	}
+	
+	// read every subheader and save the headers in a sidecar index. the index is
+	//   only an optimization so failing to make one (say the file is truncated or
+	//   lives in a read only directory) is not an error here.
+	
+	private void writeIndex() {
+		
+		try {
+			
+			byte[] main = new byte[512];
+			
+			seek(0);
+			
+			data.readFully(main);
+			
+			byte[][] raw = new byte[numDatasets()][];
+			
+			for (int i = 0; i < raw.length; i++) {
+				
+				EcatSubheader sh = subheader(i);
+				
+				raw[i] = new byte[sh == null ? 0 : 512 * sh.numBlocks()];
+				
+				seek(directory.get(i).subheaderOffset());
+				
+				data.readFully(raw[i]);
+			}
+			
+			EcatIndex.write(EcatIndex.sidecar(new File(path)), size, modified, main, directory, raw);
+			
+		} catch (IOException e) {
+			
+			// ignore: the next open reads the headers from the file again
+		}
+	}
+	
+	// move the input to a byte offset. streams cannot go backwards so they are reopened.
+	
+	private void seek(long pos) throws IOException {
+		
+		if (pos < data.position() && !data.isRandomAccess()) {
+			
+			data.close();
+			
+			data = EcatInput.open(uri);
+			
+			data.order(mainHeader.fileIsBigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		data.seek(pos);
+	}
+	
+	private void decode(int index) throws IOException {
+		
+		if (fromCache(index))
+			return;
+		
+		EcatDirectory.Entry entry = directory.get(index);
+		
+		EcatSubheader sh = subheader(index);
+		
+		if (sh == null || sh.dataType <= 0)
+			return;
+		
+		long pixels = entry.subheaderOffset() + 512L * sh.numBlocks();
+		
+		seek(pixels);
+
+		Decoded d = decodePixels(index, sh, data, decoder, options.getRegion(), pixels);
+		
+		datasets[index] = d.ds;
+		types[index] = d.type;
+		stats[index] = d.stats;
+		
+		toCache(index, d);
+	}
+	
+	// the frame cache key of a dataset or null if the dataset should not be cached.
+	//   only whole matrices of local files are cached.
+	
+	private EcatFrameCache.Key cacheKey(int index) {
+		
+		if (options.getFrameCache() == null || path == null || options.getRegion() != null)
+			return null;
+		
+		// frames decoded without statistics have a histogram of 0 bins
+		
+		int bins = options.getStatistics() ? options.getHistogramBins() : 0;
+		
+		return new EcatFrameCache.Key(path, size, modified, directory.get(index).matrixNumber,
+										options.getScaleMode(), options.getStorage(), bins);
+	}
+	
+	// fill in a dataset from the frame cache. returns false if it is not cached.
+	
+	private synchronized boolean fromCache(int index) {
+		
+		EcatFrameCache.Key key = cacheKey(index);
+		
+		if (key == null)
+			return false;
+		
+		EcatFrameCache.Frame frame = options.getFrameCache().get(key);
+		
+		if (frame == null)
+			return false;
+		
+		datasets[index] = frame.ds;
+		types[index] = frame.type;
+		stats[index] = frame.stats;
+		loaded[index] = true;
+		
+		return true;
+	}
+	
+	private void toCache(int index, Decoded d) {
+		
+		EcatFrameCache.Key key = cacheKey(index);
+		
+		if (key == null)
+			return;
+		
+		long numBytes = d.ds.rawData().size() * Ecat.bytesPerValue(d.type);
+		
+		options.getFrameCache().put(key, d.ds, d.type, d.stats, numBytes);
+	}
+	
+	// a decoded matrix, the type of its values and its statistics (if gathered)
+	
+	private static class Decoded {
+		
+		final DimensionedDataSource ds;
+		final Allocatable type;
+		final EcatStats stats;
+		
+		Decoded(DimensionedDataSource ds, Allocatable type, EcatStats stats) {
+			this.ds = ds;
+			this.type = type;
+			this.stats = stats;
+		}
+	}
+	
+	// decode the pixels of one matrix (or a region of it) whose first pixel is at byte
+	//   offset base. the input must be positioned at or before the first pixel wanted.
+	//   only touches the given input and decoder so different matrices can be
+	//   decoded concurrently.
+	
+	private Decoded decodePixels(int index, EcatSubheader sh, EcatInput data, PixelDecoder decoder,
+									EcatRegion region, long base)
+		throws IOException
+	{
+		short dataType = sh.dataType;
+		boolean signedDataFlag = sh.signedDataFlag;
+		float scaleFactor = sh.scaleFactor;
+		long[] dims = sh.dims;
+		String[] axisNames = sh.axisNames;
+		
+		// does the header have a scale factor associated with it? The lowerbound cutoff keeps
+		//   us from making a dataset where you can barely distinguish pixels from each other.
+		//   a 0.00001 scale of an unsigned 16 bit type fits in range (0, 0.32767)
+		
+		boolean scaled = scaleFactor != 0 && scaleFactor != 1 && Math.abs(scaleFactor) > 0.00001;
+		
+		// unless asked for exact scaling apply the scale factor while decoding
+		
+		boolean fused = scaled && options.getScaleMode() != EcatOptions.ScaleMode.EXACT;
+		
+		Allocatable type = fused ?
+				Ecat.scaledValue(dataType, options.getScaleMode())
+				:
+				Ecat.value(dataType, signedDataFlag);
+		
+		long planeSize = dims[0]*dims[1];
+		
+		long numPlanes = Math.max(1, (int) mainHeader.numPlanes);
+		
+		EcatRegion box = region == null ?
+				new EcatRegion(0, 0, dims[0], dims[1], 0, numPlanes)
+				:
+				region.clip(dims[0], dims[1], numPlanes);
+		
+		// the space of a part of a matrix starts at the part's first voxel
+		
+		CoordinateSpace coordSpace = sh.coordinateSpace(box.getX(), box.getY(), box.getFirstPlane());
+		
+		long cols = dims[0];
+		long rows = dims[1];
+		long w = box.getWidth();
+		long h = box.getHeight();
+		long np = box.getNumPlanes();
+		
+		dims = mainHeader.numPlanes > 1 ?
+				new long[] {w, h, np}
+				:
+				new long[] {w, h};
+
+		// decode straight into the final dataset: one allocation and one pass
+		
+		DimensionedDataSource<Allocatable> ds =
+				DimensionedStorage.allocate(options.getStorage(), type, dims);
+		
+		EcatListener listener = options.getListener();
+		
+		long numElems = ds.rawData().size();
+		
+		listener.datasetAllocated(names[index], numElems * Ecat.bytesPerValue(type));
+		
+		long start = System.nanoTime();
+		
+		// pixels are decoded in runs that are contiguous in the file: the whole
+		//   region, whole planes or single rows. anything between runs is skipped.
+		
+		long runLength;
+		if (w == cols && h == rows)
+			runLength = w * h * np;
+		else if (w == cols)
+			runLength = w * h;
+		else
+			runLength = w;
+		
+		long bytesPerPixel = PixelDecoder.bytesPerPixel(dataType);
+		
+		// statistics are tallied from the raw values while they pass through the decoder
+		
+		EcatStats.Accumulator acc = options.getStatistics() ?
+				new EcatStats.Accumulator(sh, options.getHistogramBins())
+				:
+				null;
+		
+		decoder.collect(acc);
+		
+		try {
+			
+			for (long dest = 0; dest < numElems; dest += runLength) {
+				
+				long plane = box.getFirstPlane() + dest / (w * h);
+				long row = box.getY() + (dest / w) % h;
+				long filePos = base + bytesPerPixel * ((plane * rows + row) * cols + box.getX());
+				
+				if (filePos != data.position())
+					data.seek(filePos);
+				
+				if (fused) {
+					decoder.decodeScaled(data, dataType, signedDataFlag, planeSize, scaleFactor,
+											type, ds.rawData(), dest, runLength);
+				}
+				else {
+					decoder.decode(data, dataType, signedDataFlag, planeSize,
+									ds.rawData(), dest, runLength);
+				}
+			}
+			
+		} finally {
+			
+			decoder.collect(null);
+		}
+
+		long numBytes = numElems * PixelDecoder.bytesPerPixel(dataType);
+		
+		bytesRead.addAndGet(numBytes);
+		
+		listener.frameDecoded(names[index], numBytes, System.nanoTime() - start);
+		
+		if (scaled && !fused) {
+			
+			start = System.nanoTime();
+		
+			// apply scale factor
+			
+			if (type instanceof Float64Member) {
+				
+				// a double data set can be scaled just fine
+				
+				ScaleByDouble.compute(G.DBL, (double) scaleFactor,
+										(IndexedDataSource) ds.rawData(),
+										(IndexedDataSource) ds.rawData());
+			}
+			else if (type instanceof Float32Member) {
+
+				// a float data set can be scaled just fine
+				
+				ScaleByDouble.compute(G.FLT, (double) scaleFactor,
+						(IndexedDataSource) ds.rawData(),
+						(IndexedDataSource) ds.rawData());
+			}
+			else {
+
+				// an integer based data set cannot be scaled without some
+				//   data loss so transform it into a float data set (because
+				//   our scale factor is a float).
+
+				Allocatable floatType = G.FLT.construct();
+						
+				DimensionedDataSource<Float32Member> floatDs =
+						DimensionedStorage.allocate(options.getStorage(), floatType, dims);
+				listener.datasetAllocated(names[index], numElems * Ecat.bytesPerValue(floatType));
+				HighPrecRepresentation valAsHP = (HighPrecRepresentation) type;
+				HighPrecisionMember hpVal = G.HP.construct();
+				HighPrecisionMember scale = G.HP.construct(scaleFactor);
+				Float32Member fltVal = G.FLT.construct();
+				IndexedDataSource<Allocatable> rawData = ds.rawData();
+				for (long i = 0; i < numElems; i++) {
+					rawData.get(i, type);
+					valAsHP.toHighPrec(hpVal);
+					G.HP.multiply().call(hpVal, scale, hpVal);
+					fltVal.fromHighPrec(hpVal);
+					floatDs.rawData().set(i, fltVal);
+				}
+				ds = (DimensionedDataSource) floatDs;
+				type = floatType;
+			}
+			
+			listener.frameScaled(names[index], scaleFactor, System.nanoTime() - start);
+		}
+		
+		ds.setName(names[index]);
+		ds.setSource(mainHeader.fname);
+		
+		if (ds.numDimensions() > 0) ds.setAxisType(0, axisNames[0]);
+		if (ds.numDimensions() > 1) ds.setAxisType(1, axisNames[1]);
+		if (ds.numDimensions() > 2) ds.setAxisType(2, axisNames[2]);
+		
+		if (coordSpace != null) ds.setCoordinateSpace(coordSpace);
+		
+		ds.setValueUnit(mainHeader.dataUnits);
+		
+		EcatStats frameStats = null;
+		
+		if (acc != null) {
+			
+			frameStats = acc.finish(scaled ? scaleFactor : 1, type instanceof Float32Member);
+			
+			listener.frameStats(names[index], frameStats);
+		}
+		
+		return new Decoded(ds, type, frameStats);
+	}
+}
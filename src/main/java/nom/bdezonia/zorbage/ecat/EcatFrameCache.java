@@ -0,0 +1,207 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import nom.bdezonia.zorbage.algebra.Allocatable;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.storage.StorageConstruction;
+
+/**
+ * A cache of decoded frames that can be shared by any number of reads (set it
+ * on the EcatOptions of each read). Frames are found by file identity (path,
+ * size and modification time) and matrix number so a file that is rewritten
+ * is never served stale frames. The cache holds at most a given number of
+ * bytes of pixel data. When it is full the least recently used frames are
+ * dropped. Frames read with a region are not cached.
+ * <p>
+ * Cached frames are handed to every reader that asks for them. Treat them as
+ * read only: changing their values changes them for every later read.
+ * <p>
+ * A cache is thread safe.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatFrameCache {
+
+	private final long maxBytes;
+	private final LinkedHashMap<Key, Frame> frames = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Make a cache that holds up to the given number of bytes of pixel data.
+	 * 
+	 * @param maxBytes
+	 */
+	public EcatFrameCache(long maxBytes) {
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("cache size cannot be negative");
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the most bytes of pixel data the cache will hold.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the bytes of pixel data the cache currently holds.
+	 */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of frames the cache currently holds.
+	 */
+	public synchronized int size() {
+		return frames.size();
+	}
+
+	/**
+	 * Returns the number of frames that were found in the cache.
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of frames that were looked for and not found.
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of frames that were dropped to make room for others.
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Drop every frame. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		frames.clear();
+		bytes = 0;
+	}
+
+	// returns the cached frame for a key (marking it as most recently used) or null
+
+	synchronized Frame get(Key key) {
+		Frame frame = frames.get(key);
+		if (frame == null)
+			misses++;
+		else
+			hits++;
+		return frame;
+	}
+
+	// add a frame, dropping least recently used ones until it fits. frames that are
+	//   larger than the whole cache are not kept.
+
+	synchronized void put(Key key, DimensionedDataSource<?> ds, Allocatable type, EcatStats stats, long numBytes) {
+		if (numBytes > maxBytes)
+			return;
+		Frame old = frames.put(key, new Frame(ds, type, stats, numBytes));
+		if (old != null)
+			bytes -= old.numBytes;
+		bytes += numBytes;
+		Iterator<Map.Entry<Key, Frame>> iter = frames.entrySet().iterator();
+		while (bytes > maxBytes && iter.hasNext()) {
+			Map.Entry<Key, Frame> eldest = iter.next();
+			if (eldest.getKey().equals(key))
+				continue;
+			bytes -= eldest.getValue().numBytes;
+			iter.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * A decoded frame, the type of its values and its statistics (if gathered).
+	 */
+	static class Frame {
+
+		final DimensionedDataSource<?> ds;
+		final Allocatable type;
+		final EcatStats stats;
+		final long numBytes;
+
+		Frame(DimensionedDataSource<?> ds, Allocatable type, EcatStats stats, long numBytes) {
+			this.ds = ds;
+			this.type = type;
+			this.stats = stats;
+			this.numBytes = numBytes;
+		}
+	}
+
+	/**
+	 * Identifies one frame of one version of a file. The scale mode and the
+	 * storage are part of the key since they change what is decoded. So does
+	 * whether statistics are gathered.
+	 */
+	static class Key {
+
+		private final String path;
+		private final long size;
+		private final long modified;
+		private final int matrixNumber;
+		private final EcatOptions.ScaleMode scaleMode;
+		private final StorageConstruction storage;
+		private final int histogramBins;
+
+		Key(String path, long size, long modified, int matrixNumber,
+				EcatOptions.ScaleMode scaleMode, StorageConstruction storage, int histogramBins)
+		{
+			this.path = path;
+			this.size = size;
+			this.modified = modified;
+			this.matrixNumber = matrixNumber;
+			this.scaleMode = scaleMode;
+			this.storage = storage;
+			this.histogramBins = histogramBins;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return path.equals(other.path) && size == other.size && modified == other.modified &&
+					matrixNumber == other.matrixNumber && scaleMode == other.scaleMode &&
+					storage == other.storage && histogramBins == other.histogramBins;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, size, modified, matrixNumber, scaleMode, storage, histogramBins);
+		}
+	}
+}
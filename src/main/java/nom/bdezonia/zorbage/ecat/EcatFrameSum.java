@@ -0,0 +1,295 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+import nom.bdezonia.zorbage.type.real.float64.Float64Member;
+
+/**
+ * Reduces a range of frames of a dynamic study to a single float64 image:
+ * their sum or their average weighted by frame duration. Frames are read
+ * plane by plane straight from the file and added into one accumulator, so
+ * about one frame is held in memory no matter how many frames are reduced.
+ * When the file's options have an executor the planes of a local file are
+ * reduced in parallel.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatFrameSum {
+
+	/**
+	 * How the frames are combined.
+	 */
+	public enum Method {
+		
+		/**
+		 * Add the frames together.
+		 */
+		SUM,
+		
+		/**
+		 * Average the frames weighting each one by its frame duration.
+		 */
+		TIME_WEIGHTED_AVERAGE
+	}
+	
+	private Method method = Method.SUM;
+	private int firstDataset = 0;
+	private int lastDataset = -1;
+	private boolean decayCorrection = false;
+
+	/**
+	 * Returns how the frames are combined. The default is SUM.
+	 */
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * Sets how the frames are combined.
+	 * 
+	 * @param method
+	 */
+	public void setMethod(Method method) {
+		if (method == null)
+			throw new IllegalArgumentException("method cannot be null");
+		this.method = method;
+	}
+
+	/**
+	 * Returns the index of the first dataset reduced. The default is 0.
+	 */
+	public int getFirstDataset() {
+		return firstDataset;
+	}
+
+	/**
+	 * Sets the index of the first dataset reduced.
+	 * 
+	 * @param index
+	 */
+	public void setFirstDataset(int index) {
+		if (index < 0)
+			throw new IllegalArgumentException("first dataset cannot be negative");
+		this.firstDataset = index;
+	}
+
+	/**
+	 * Returns the index of the last dataset reduced. A negative value (the
+	 * default) means the last dataset of the file.
+	 */
+	public int getLastDataset() {
+		return lastDataset;
+	}
+
+	/**
+	 * Sets the index of the last dataset reduced. A negative value means the
+	 * last dataset of the file.
+	 * 
+	 * @param index
+	 */
+	public void setLastDataset(int index) {
+		this.lastDataset = index;
+	}
+
+	/**
+	 * Returns true if frames are decay corrected to the scan start before
+	 * they are combined. The default is false.
+	 */
+	public boolean getDecayCorrection() {
+		return decayCorrection;
+	}
+
+	/**
+	 * Sets whether frames are decay corrected to the scan start before they
+	 * are combined. The correction uses the isotope half life of the main
+	 * header and the timing of each frame. Frames whose subheader records a
+	 * decay correction factor other than 1 were already corrected when they
+	 * were reconstructed and are left alone.
+	 * 
+	 * @param decayCorrection
+	 */
+	public void setDecayCorrection(boolean decayCorrection) {
+		this.decayCorrection = decayCorrection;
+	}
+
+	/**
+	 * Reduce the frames of an open file. Datasets in the range that have no
+	 * pixels are skipped. The others must all have the same dimensions.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException If the range holds no pixels, the frames
+	 *           differ in size or the headers lack what the method needs (frame
+	 *           durations for an average, the isotope half life for decay
+	 *           correction).
+	 */
+	public DimensionedDataSource<Float64Member> compute(EcatFile file) throws IOException {
+		
+		if (file == null)
+			throw new IllegalArgumentException("file cannot be null");
+		
+		int last = lastDataset < 0 ? file.numDatasets() - 1 : Math.min(lastDataset, file.numDatasets() - 1);
+		
+		List<Integer> found = new ArrayList<>();
+		
+		for (int i = firstDataset; i <= last; i++) {
+			EcatSubheader sh = file.subheader(i);
+			if (sh != null && sh.dataType > 0)
+				found.add(i);
+		}
+		
+		if (found.isEmpty())
+			throw new IllegalArgumentException("no datasets with pixels between "+firstDataset+" and "+last);
+		
+		int[] indices = new int[found.size()];
+		for (int k = 0; k < indices.length; k++) {
+			indices[k] = found.get(k);
+		}
+		
+		EcatMainHeader mainHeader = file.getMainHeader();
+		
+		EcatSubheader first = file.subheader(indices[0]);
+		
+		// the weight each frame's pixels are multiplied by before they are added
+		
+		double[] weights = new double[indices.length];
+		double totalDuration = 0;
+		
+		for (int k = 0; k < indices.length; k++) {
+			
+			EcatSubheader sh = file.subheader(indices[k]);
+			
+			if (sh.dims[0] != first.dims[0] || sh.dims[1] != first.dims[1])
+				throw new IllegalArgumentException("datasets "+indices[0]+" and "+indices[k]+" have different dimensions");
+			
+			weights[k] = method == Method.TIME_WEIGHTED_AVERAGE ? sh.frameLength() : 1;
+			
+			if (decayCorrection)
+				weights[k] *= decayFactor(mainHeader, sh);
+			
+			totalDuration += sh.frameLength();
+		}
+		
+		double norm = 1;
+		
+		if (method == Method.TIME_WEIGHTED_AVERAGE) {
+			
+			if (totalDuration <= 0)
+				throw new IllegalArgumentException("the frames do not record their durations");
+			
+			norm = 1 / totalDuration;
+		}
+		
+		long cols = first.dims[0];
+		long rows = first.dims[1];
+		long numPlanes = Math.max(1, (int) mainHeader.numPlanes);
+		long planeSize = cols * rows;
+		
+		long[] dims = mainHeader.numPlanes > 1 ?
+				new long[] {cols, rows, numPlanes}
+				:
+				new long[] {cols, rows};
+		
+		DimensionedDataSource<Float64Member> result =
+				DimensionedStorage.allocate(file.getOptions().getStorage(), G.DBL.construct(), dims);
+		
+		double scale = norm;
+		
+		file.reducePlanes(indices, null, new PlaneReducer<double[]>() {
+
+			@Override
+			public double[] start(long plane) {
+				return new double[(int) planeSize];
+			}
+
+			@Override
+			public void add(double[] sums, int frame, int offset, double[] values, int count) {
+				double w = weights[frame];
+				for (int i = 0; i < count; i++) {
+					sums[offset + i] += w * values[i];
+				}
+			}
+
+			@Override
+			public void finish(long plane, double[] sums) {
+				
+				// planes finish on different threads: storage may not allow concurrent writes
+				
+				synchronized (result) {
+					Float64Member value = G.DBL.construct();
+					long base = plane * planeSize;
+					for (int i = 0; i < sums.length; i++) {
+						value.setV(sums[i] * scale);
+						result.rawData().set(base + i, value);
+					}
+				}
+			}
+		});
+		
+		String what = method == Method.SUM ? "Sum" : "Time weighted average";
+		
+		result.setName(what + " of " + file.datasetName(indices[0]) + " to " + file.datasetName(indices[indices.length-1]));
+		result.setSource(mainHeader.fname);
+		
+		for (int d = 0; d < result.numDimensions() && d < first.axisNames.length; d++) {
+			result.setAxisType(d, first.axisNames[d]);
+		}
+		
+		if (first.coordSpace != null) result.setCoordinateSpace(first.coordSpace);
+		
+		result.setValueUnit(mainHeader.dataUnits);
+		
+		return result;
+	}
+	
+	// The factor that corrects a frame's average activity back to the scan start:
+	//   lambda * d * exp(lambda * t0) / (1 - exp(-lambda * d)) for a frame that
+	//   starts at t0 and lasts d seconds.
+	
+	private static double decayFactor(EcatMainHeader mainHeader, EcatSubheader sh) {
+		
+		double applied = sh.decayCorrection();
+		
+		if (applied != 0 && applied != 1)
+			return 1;
+		
+		if (mainHeader.isotopeHalflife <= 0)
+			throw new IllegalArgumentException("the main header does not record the isotope half life");
+		
+		double lambda = Math.log(2) / mainHeader.isotopeHalflife;
+		
+		double start = sh.frameStart() / 1000.0;
+		double duration = sh.frameLength() / 1000.0;
+		
+		double factor = Math.exp(lambda * start);
+		
+		if (duration > 0)
+			factor *= lambda * duration / -Math.expm1(-lambda * duration);
+		
+		return factor;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The headers of an ecat file without any of its pixel data. Useful for
+ * cataloguing large numbers of files quickly.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatHeaders {
+
+	private final EcatMainHeader mainHeader;
+	private final List<String> names;
+	private final List<EcatSubheader> subheaders;
+
+	EcatHeaders(EcatMainHeader mainHeader, String[] names, EcatSubheader[] subheaders) {
+		this.mainHeader = mainHeader;
+		this.names = Collections.unmodifiableList(Arrays.asList(names));
+		this.subheaders = Collections.unmodifiableList(Arrays.asList(subheaders));
+	}
+
+	/**
+	 * Returns the main header of the file.
+	 */
+	public EcatMainHeader getMainHeader() {
+		return mainHeader;
+	}
+
+	/**
+	 * Returns the number of matrix subheaders.
+	 */
+	public int numSubheaders() {
+		return subheaders.size();
+	}
+	
+	/**
+	 * Returns the subheader at the given index. Cast it to the subclass that
+	 * matches the file type (such as EcatImageSubheader for file type 7) to
+	 * see all of its fields. Null when the file type is not supported.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public EcatSubheader getSubheader(int index) {
+		return subheaders.get(index);
+	}
+	
+	/**
+	 * Returns the dataset name that goes with the subheader at the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public String getName(int index) {
+		return names.get(index);
+	}
+}
@@ -0,0 +1,676 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import nom.bdezonia.zorbage.coordinates.Affine2dCoordinateSpace;
+import nom.bdezonia.zorbage.coordinates.Affine3dCoordinateSpace;
+import nom.bdezonia.zorbage.coordinates.CoordinateSpace;
+import nom.bdezonia.zorbage.coordinates.LinearNdCoordinateSpace;
+
+/**
+ * The ecat 7 subheader of an image (file type 7) matrix.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatImageSubheader extends EcatSubheader {
+
+	short xDimension;
+	short yDimension;
+	short zDimension;
+	float xOffset;
+	float yOffset;
+	float zOffset;
+	int frameDuration;
+	int frameStartTime;
+	float xResolution;
+	float yResolution;
+	float zResolution;
+	float numRElementsF;  // spec says yes, this is a float
+	float numAnglesF;  // spec says yes, this is a float
+	int gateDuration;
+	int rWaveOffset;
+	int numAcceptedBeats;
+	float reconZoom;
+	short imageMin;
+	short imageMax;
+	float xPixelSize;
+	float yPixelSize;
+	float zPixelSize;
+	short filterCode;
+	float zRotationAngle;
+	float decayCorrFctr;
+	int processingCode;
+	float filterCutoffFrequency;
+	float filterResolution;
+	float filterRampSlope;
+	short filterOrder;
+	float filterScatterFraction;
+	float filterScatterSlope;
+	String annotation;
+	float m_1_1;
+	float m_1_2;
+	float m_1_3;
+	float m_2_1;
+	float m_2_2;
+	float m_2_3;
+	float m_3_1;
+	float m_3_2;
+	float m_3_3;
+	float rfilterCutoff;
+	float rfilterResolution;
+	short rfilterCode;
+	short rfilterOrder;
+	float zfilterCutoff;
+	float zfilterResolution;
+	short zfilterCode;
+	short zfilterOrder;
+	float m_1_4;
+	float m_2_4;
+	float m_3_4;
+	short scatterType;
+	short reconType;
+	short reconViews;
+
+	// only the reader makes these
+	
+	EcatImageSubheader() { }
+
+	public short getXDimension() {
+		return xDimension;
+	}
+
+	public short getYDimension() {
+		return yDimension;
+	}
+
+	public short getZDimension() {
+		return zDimension;
+	}
+
+	public float getXOffset() {
+		return xOffset;
+	}
+
+	public float getYOffset() {
+		return yOffset;
+	}
+
+	public float getZOffset() {
+		return zOffset;
+	}
+
+	public int getFrameDuration() {
+		return frameDuration;
+	}
+
+	public int getFrameStartTime() {
+		return frameStartTime;
+	}
+
+	public float getXResolution() {
+		return xResolution;
+	}
+
+	public float getYResolution() {
+		return yResolution;
+	}
+
+	public float getZResolution() {
+		return zResolution;
+	}
+
+	public float getNumRElementsF() {
+		return numRElementsF;
+	}
+
+	public float getNumAnglesF() {
+		return numAnglesF;
+	}
+
+	public int getGateDuration() {
+		return gateDuration;
+	}
+
+	public int getRWaveOffset() {
+		return rWaveOffset;
+	}
+
+	public int getNumAcceptedBeats() {
+		return numAcceptedBeats;
+	}
+
+	public float getReconZoom() {
+		return reconZoom;
+	}
+
+	public short getImageMin() {
+		return imageMin;
+	}
+
+	public short getImageMax() {
+		return imageMax;
+	}
+
+	public float getXPixelSize() {
+		return xPixelSize;
+	}
+
+	public float getYPixelSize() {
+		return yPixelSize;
+	}
+
+	public float getZPixelSize() {
+		return zPixelSize;
+	}
+
+	public short getFilterCode() {
+		return filterCode;
+	}
+
+	public float getZRotationAngle() {
+		return zRotationAngle;
+	}
+
+	public float getDecayCorrFctr() {
+		return decayCorrFctr;
+	}
+
+	public int getProcessingCode() {
+		return processingCode;
+	}
+
+	public float getFilterCutoffFrequency() {
+		return filterCutoffFrequency;
+	}
+
+	public float getFilterResolution() {
+		return filterResolution;
+	}
+
+	public float getFilterRampSlope() {
+		return filterRampSlope;
+	}
+
+	public short getFilterOrder() {
+		return filterOrder;
+	}
+
+	public float getFilterScatterFraction() {
+		return filterScatterFraction;
+	}
+
+	public float getFilterScatterSlope() {
+		return filterScatterSlope;
+	}
+
+	public String getAnnotation() {
+		return annotation;
+	}
+
+	public float getM11() {
+		return m_1_1;
+	}
+
+	public float getM12() {
+		return m_1_2;
+	}
+
+	public float getM13() {
+		return m_1_3;
+	}
+
+	public float getM21() {
+		return m_2_1;
+	}
+
+	public float getM22() {
+		return m_2_2;
+	}
+
+	public float getM23() {
+		return m_2_3;
+	}
+
+	public float getM31() {
+		return m_3_1;
+	}
+
+	public float getM32() {
+		return m_3_2;
+	}
+
+	public float getM33() {
+		return m_3_3;
+	}
+
+	public float getRfilterCutoff() {
+		return rfilterCutoff;
+	}
+
+	public float getRfilterResolution() {
+		return rfilterResolution;
+	}
+
+	public short getRfilterCode() {
+		return rfilterCode;
+	}
+
+	public short getRfilterOrder() {
+		return rfilterOrder;
+	}
+
+	public float getZfilterCutoff() {
+		return zfilterCutoff;
+	}
+
+	public float getZfilterResolution() {
+		return zfilterResolution;
+	}
+
+	public short getZfilterCode() {
+		return zfilterCode;
+	}
+
+	public short getZfilterOrder() {
+		return zfilterOrder;
+	}
+
+	public float getM14() {
+		return m_1_4;
+	}
+
+	public float getM24() {
+		return m_2_4;
+	}
+
+	public float getM34() {
+		return m_3_4;
+	}
+
+	public short getScatterType() {
+		return scatterType;
+	}
+
+	public short getReconType() {
+		return reconType;
+	}
+
+	public short getReconViews() {
+		return reconViews;
+	}
+
+	@Override
+	double headerMin() {
+		return imageMin;
+	}
+
+	@Override
+	double headerMax() {
+		return imageMax;
+	}
+
+	@Override
+	int frameStart() {
+		return frameStartTime;
+	}
+
+	@Override
+	int frameLength() {
+		return frameDuration;
+	}
+
+	@Override
+	double decayCorrection() {
+		return decayCorrFctr;
+	}
+
+	@Override
+	CoordinateSpace coordinateSpace(long x, long y, long plane) {
+		if (x == 0 && y == 0 && plane == 0)
+			return coordSpace;
+		return spaceAt(x, y, plane);
+	}
+
+	@Override
+	void readFields(EcatInput data, boolean fileIsBigEndian) throws IOException {
+
+		dataType = Ecat.readShort(data, fileIsBigEndian);
+		numDimensions = Ecat.readShort(data, fileIsBigEndian);
+		dims = new long[numDimensions];
+		xDimension = Ecat.readShort(data, fileIsBigEndian);
+		yDimension = Ecat.readShort(data, fileIsBigEndian);
+		zDimension = Ecat.readShort(data, fileIsBigEndian);
+		if (numDimensions > 0)
+			dims[0] = xDimension;
+		if (numDimensions > 1)
+			dims[1] = yDimension;
+		if (numDimensions > 2)
+			dims[2] = zDimension;
+		for (int i = 3; i < numDimensions; i++) {
+			dims[i] = 1;
+		}
+		xOffset = Ecat.readFloat(data, fileIsBigEndian);
+		yOffset = Ecat.readFloat(data, fileIsBigEndian);
+		zOffset = Ecat.readFloat(data, fileIsBigEndian);
+		reconZoom = Ecat.readFloat(data, fileIsBigEndian);
+		scaleFactor = Ecat.readFloat(data, fileIsBigEndian);
+		imageMin = Ecat.readShort(data, fileIsBigEndian);
+		signedDataFlag = imageMin < 0;
+		imageMax = Ecat.readShort(data, fileIsBigEndian);
+		xPixelSize = Ecat.readFloat(data, fileIsBigEndian);
+		yPixelSize = Ecat.readFloat(data, fileIsBigEndian);
+		zPixelSize = Ecat.readFloat(data, fileIsBigEndian);
+		frameDuration = Ecat.readInt(data, fileIsBigEndian);
+		frameStartTime = Ecat.readInt(data, fileIsBigEndian);
+		filterCode = Ecat.readShort(data, fileIsBigEndian);
+		xResolution = Ecat.readFloat(data, fileIsBigEndian);
+		yResolution = Ecat.readFloat(data, fileIsBigEndian);
+		zResolution = Ecat.readFloat(data, fileIsBigEndian);
+		numRElementsF = Ecat.readFloat(data, fileIsBigEndian);
+		numAnglesF = Ecat.readFloat(data, fileIsBigEndian);
+		zRotationAngle = Ecat.readFloat(data, fileIsBigEndian);
+		decayCorrFctr = Ecat.readFloat(data, fileIsBigEndian);
+		processingCode = Ecat.readInt(data, fileIsBigEndian);  // % see interpCodes(sh.processing_code) function below
+		gateDuration = Ecat.readInt(data, fileIsBigEndian);
+		rWaveOffset = Ecat.readInt(data, fileIsBigEndian);
+		numAcceptedBeats = Ecat.readInt(data, fileIsBigEndian);
+		filterCutoffFrequency = Ecat.readFloat(data, fileIsBigEndian);
+		filterResolution = Ecat.readFloat(data, fileIsBigEndian);
+		filterRampSlope = Ecat.readFloat(data, fileIsBigEndian);
+		filterOrder = Ecat.readShort(data, fileIsBigEndian);
+		filterScatterFraction = Ecat.readFloat(data, fileIsBigEndian);
+		filterScatterSlope = Ecat.readFloat(data, fileIsBigEndian);
+		annotation = Ecat.readString(data, 40);
+		m_1_1 = Ecat.readFloat(data, fileIsBigEndian);
+		m_1_2 = Ecat.readFloat(data, fileIsBigEndian);
+		m_1_3 = Ecat.readFloat(data, fileIsBigEndian);
+		m_2_1 = Ecat.readFloat(data, fileIsBigEndian);
+		m_2_2 = Ecat.readFloat(data, fileIsBigEndian);
+		m_2_3 = Ecat.readFloat(data, fileIsBigEndian);
+		m_3_1 = Ecat.readFloat(data, fileIsBigEndian);
+		m_3_2 = Ecat.readFloat(data, fileIsBigEndian);
+		m_3_3 = Ecat.readFloat(data, fileIsBigEndian);
+		rfilterCutoff = Ecat.readFloat(data, fileIsBigEndian);
+		rfilterResolution = Ecat.readFloat(data, fileIsBigEndian);
+		rfilterCode = Ecat.readShort(data, fileIsBigEndian);
+		rfilterOrder = Ecat.readShort(data, fileIsBigEndian);
+		zfilterCutoff = Ecat.readFloat(data, fileIsBigEndian);
+		zfilterResolution = Ecat.readFloat(data, fileIsBigEndian);
+		zfilterCode = Ecat.readShort(data, fileIsBigEndian);
+		zfilterOrder = Ecat.readShort(data, fileIsBigEndian);
+		m_1_4 = Ecat.readFloat(data, fileIsBigEndian);
+		m_2_4 = Ecat.readFloat(data, fileIsBigEndian);
+		m_3_4 = Ecat.readFloat(data, fileIsBigEndian);
+		scatterType = Ecat.readShort(data, fileIsBigEndian);
+		reconType = Ecat.readShort(data, fileIsBigEndian);
+		reconViews = Ecat.readShort(data, fileIsBigEndian);
+		data.skip(2 * 87);  // fillCti
+		if (Ecat.readInt(data, fileIsBigEndian) == SIGNED_MARK)  // fillUser
+			signedDataFlag = true;
+		data.skip(2 * 47);  // fillUser
+		
+		if (coordSpace == null) {
+		
+			coordSpace = spaceAt(0, 0, 0);
+			
+			if (coordSpace instanceof LinearNdCoordinateSpace) {
+				
+				int numLegitDimensions = 0;
+				for (int i  = 0; i < numDimensions; i++) {
+					if (dims[i] > 1)
+						numLegitDimensions++;
+				}
+				
+				axisNames = new String[numLegitDimensions];
+				
+				int counted = 0;
+				for (int i = 0; i < numDimensions; i++) {
+					if (i == 0 && xDimension > 1)
+						axisNames[counted++] = "x";
+					else if (i == 1 && yDimension > 1)
+						axisNames[counted++] = "y";
+					else if (i == 2 && zDimension > 1)
+						axisNames[counted++] = "z";
+					else if (i >= 3 && dims.length >= 3 && dims[i] > 1)
+						axisNames[counted++] = "unk";
+				}
+			}
+		}
+	}
+
+	// the coordinate space of the part of the matrix whose first voxel is at
+	//   column x, row y and plane z
+
+	private CoordinateSpace spaceAt(long x, long y, long z) {
+		
+		CoordinateSpace space = null;
+		
+		int numLegitDimensions = 0;
+		for (int i  = 0; i < numDimensions; i++) {
+			if (dims[i] > 1)
+				numLegitDimensions++;
+		}
+	
+		if (m_1_1 != 0 || m_1_2 != 0 || m_1_3 != 0 || m_1_4 != 0 || 
+				m_2_1 != 0 || m_2_2 != 0 || m_2_3 != 0 || m_2_4 != 0 || 
+				m_3_1 != 0 || m_3_2 != 0 || m_3_3 != 0 || m_3_4 != 0)
+		{
+			if (numLegitDimensions == 2) {
+				float u1=0,u2=0,v1=0,v2=0;
+				BigDecimal u3=BigDecimal.ZERO,v3=BigDecimal.ZERO;
+				if (numDimensions == 3) {
+					if (xDimension <= 1) {
+						u1 = m_2_2;
+						u2 = m_2_3;
+						u3 = translate(m_2_4, m_2_1, m_2_2, m_2_3, x, y, z);
+						v1 = m_3_2;
+						v2 = m_3_3;
+						v3 = translate(m_3_4, m_3_1, m_3_2, m_3_3, x, y, z);
+					}
+					else if (yDimension <= 1) {
+						u1 = m_1_1;
+						u2 = m_1_3;
+						u3 = translate(m_1_4, m_1_1, m_1_2, m_1_3, x, y, z);
+						v1 = m_3_1;
+						v2 = m_3_3;
+						v3 = translate(m_3_4, m_3_1, m_3_2, m_3_3, x, y, z);
+					}
+					else if (zDimension <= 1) {
+						u1 = m_1_1;
+						u2 = m_1_2;
+						u3 = translate(m_1_4, m_1_1, m_1_2, m_1_3, x, y, z);
+						v1 = m_2_1;
+						v2 = m_2_2;
+						v3 = translate(m_2_4, m_2_1, m_2_2, m_2_3, x, y, z);
+					}
+					else {
+						throw new IllegalArgumentException("unexpected num non trivial dimensions");
+					}
+					space =
+							new Affine2dCoordinateSpace(
+									BigDecimal.valueOf(u1), 
+									BigDecimal.valueOf(u2),
+									u3,
+									BigDecimal.valueOf(v1),
+									BigDecimal.valueOf(v2),
+									v3);
+	
+				}
+				else if (numDimensions == 2) {
+					space =
+							new Affine2dCoordinateSpace(
+									BigDecimal.valueOf(m_1_1), 
+									BigDecimal.valueOf(m_1_2),
+									translate(m_1_4, m_1_1, m_1_2, m_1_3, x, y, z),
+									BigDecimal.valueOf(m_2_1),
+									BigDecimal.valueOf(m_2_2),
+									translate(m_2_4, m_2_1, m_2_2, m_2_3, x, y, z));
+				}
+			}
+	
+			if (numLegitDimensions == 3)
+				space =
+					new Affine3dCoordinateSpace(
+							BigDecimal.valueOf(m_1_1), 
+							BigDecimal.valueOf(m_1_2),
+							BigDecimal.valueOf(m_1_3),
+							translate(m_1_4, m_1_1, m_1_2, m_1_3, x, y, z),
+							BigDecimal.valueOf(m_2_1),
+							BigDecimal.valueOf(m_2_2),
+							BigDecimal.valueOf(m_2_3),
+							translate(m_2_4, m_2_1, m_2_2, m_2_3, x, y, z),
+							BigDecimal.valueOf(m_3_1),
+							BigDecimal.valueOf(m_3_2),
+							BigDecimal.valueOf(m_3_3),
+							translate(m_3_4, m_3_1, m_3_2, m_3_3, x, y, z));
+		}
+		else {
+	
+			BigDecimal[] scales = new BigDecimal[numLegitDimensions];
+			BigDecimal[] offsets = new BigDecimal[numLegitDimensions];
+	
+			int counted = 0;
+			for (int i = 0; i < numDimensions; i++) {
+				if (i == 0 && xDimension > 1) {
+					scales[counted] = BigDecimal.valueOf(xPixelSize);
+					offsets[counted] = translate(xOffset, xPixelSize, x);
+					counted++;
+				}
+				else if (i == 1 && yDimension > 1) {
+					scales[counted] = BigDecimal.valueOf(yPixelSize);
+					offsets[counted] = translate(yOffset, yPixelSize, y);
+					counted++;
+				}
+				else if (i == 2 && zDimension > 1) {
+					scales[counted] = BigDecimal.valueOf(zPixelSize);
+					offsets[counted] = translate(zOffset, zPixelSize, z);
+					counted++;
+				}
+				else if (i >= 3 && dims.length >= 3 && dims[i] > 1) {
+					scales[counted] = BigDecimal.ONE;
+					offsets[counted] = BigDecimal.ZERO;
+					counted++;
+				}
+			}
+			space = new LinearNdCoordinateSpace(scales, offsets);
+		}
+		
+		return space;
+	}
+
+	// the coordinate of voxel index i along an axis of the given origin and spacing
+
+	private static BigDecimal translate(float origin, float spacing, long i) {
+		
+		BigDecimal value = BigDecimal.valueOf(origin);
+		
+		if (i != 0)
+			value = value.add(BigDecimal.valueOf(spacing).multiply(BigDecimal.valueOf(i)));
+		
+		return value;
+	}
+
+	// the translation of one row of an affine transform after moving its origin
+	//   to voxel (x, y, z)
+
+	private static BigDecimal translate(float t, float a, float b, float c, long x, long y, long z) {
+		
+		BigDecimal value = BigDecimal.valueOf(t);
+		
+		if (x != 0)
+			value = value.add(BigDecimal.valueOf(a).multiply(BigDecimal.valueOf(x)));
+		if (y != 0)
+			value = value.add(BigDecimal.valueOf(b).multiply(BigDecimal.valueOf(y)));
+		if (z != 0)
+			value = value.add(BigDecimal.valueOf(c).multiply(BigDecimal.valueOf(z)));
+		
+		return value;
+	}
+
+	@Override
+	void writeFields(ByteBuffer buf, boolean fileIsBigEndian) {
+
+		Ecat.writeShort(buf, dataType, fileIsBigEndian);
+		Ecat.writeShort(buf, numDimensions, fileIsBigEndian);
+		Ecat.writeShort(buf, xDimension, fileIsBigEndian);
+		Ecat.writeShort(buf, yDimension, fileIsBigEndian);
+		Ecat.writeShort(buf, zDimension, fileIsBigEndian);
+		Ecat.writeFloat(buf, xOffset, fileIsBigEndian);
+		Ecat.writeFloat(buf, yOffset, fileIsBigEndian);
+		Ecat.writeFloat(buf, zOffset, fileIsBigEndian);
+		Ecat.writeFloat(buf, reconZoom, fileIsBigEndian);
+		Ecat.writeFloat(buf, scaleFactor, fileIsBigEndian);
+		Ecat.writeShort(buf, imageMin, fileIsBigEndian);
+		Ecat.writeShort(buf, imageMax, fileIsBigEndian);
+		Ecat.writeFloat(buf, xPixelSize, fileIsBigEndian);
+		Ecat.writeFloat(buf, yPixelSize, fileIsBigEndian);
+		Ecat.writeFloat(buf, zPixelSize, fileIsBigEndian);
+		Ecat.writeInt(buf, frameDuration, fileIsBigEndian);
+		Ecat.writeInt(buf, frameStartTime, fileIsBigEndian);
+		Ecat.writeShort(buf, filterCode, fileIsBigEndian);
+		Ecat.writeFloat(buf, xResolution, fileIsBigEndian);
+		Ecat.writeFloat(buf, yResolution, fileIsBigEndian);
+		Ecat.writeFloat(buf, zResolution, fileIsBigEndian);
+		Ecat.writeFloat(buf, numRElementsF, fileIsBigEndian);
+		Ecat.writeFloat(buf, numAnglesF, fileIsBigEndian);
+		Ecat.writeFloat(buf, zRotationAngle, fileIsBigEndian);
+		Ecat.writeFloat(buf, decayCorrFctr, fileIsBigEndian);
+		Ecat.writeInt(buf, processingCode, fileIsBigEndian);
+		Ecat.writeInt(buf, gateDuration, fileIsBigEndian);
+		Ecat.writeInt(buf, rWaveOffset, fileIsBigEndian);
+		Ecat.writeInt(buf, numAcceptedBeats, fileIsBigEndian);
+		Ecat.writeFloat(buf, filterCutoffFrequency, fileIsBigEndian);
+		Ecat.writeFloat(buf, filterResolution, fileIsBigEndian);
+		Ecat.writeFloat(buf, filterRampSlope, fileIsBigEndian);
+		Ecat.writeShort(buf, filterOrder, fileIsBigEndian);
+		Ecat.writeFloat(buf, filterScatterFraction, fileIsBigEndian);
+		Ecat.writeFloat(buf, filterScatterSlope, fileIsBigEndian);
+		Ecat.writeString(buf, annotation, 40);
+		Ecat.writeFloat(buf, m_1_1, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_1_2, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_1_3, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_2_1, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_2_2, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_2_3, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_3_1, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_3_2, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_3_3, fileIsBigEndian);
+		Ecat.writeFloat(buf, rfilterCutoff, fileIsBigEndian);
+		Ecat.writeFloat(buf, rfilterResolution, fileIsBigEndian);
+		Ecat.writeShort(buf, rfilterCode, fileIsBigEndian);
+		Ecat.writeShort(buf, rfilterOrder, fileIsBigEndian);
+		Ecat.writeFloat(buf, zfilterCutoff, fileIsBigEndian);
+		Ecat.writeFloat(buf, zfilterResolution, fileIsBigEndian);
+		Ecat.writeShort(buf, zfilterCode, fileIsBigEndian);
+		Ecat.writeShort(buf, zfilterOrder, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_1_4, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_2_4, fileIsBigEndian);
+		Ecat.writeFloat(buf, m_3_4, fileIsBigEndian);
+		Ecat.writeShort(buf, scatterType, fileIsBigEndian);
+		Ecat.writeShort(buf, reconType, fileIsBigEndian);
+		Ecat.writeShort(buf, reconViews, fileIsBigEndian);
+		buf.position(buf.position() + 2 * 87);  // fillCti
+		Ecat.writeInt(buf, signedDataFlag ? SIGNED_MARK : 0, fileIsBigEndian);  // fillUser
+		buf.position(buf.position() + 2 * 47);  // fillUser
+	}
+}
@@ -0,0 +1,196 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sidecar index of an ecat file. The index is a small binary file (named
+ * like the ecat file plus ".idx") that holds the main header, the matrix
+ * directory and every subheader. An ecat file that has a valid index can be
+ * opened without reading any of its headers: the next read goes straight to
+ * pixel data. An index records the size and modification time of its ecat
+ * file and is ignored once they no longer match.
+ * <p>
+ * The headers are kept as their raw 512 byte blocks and parsed when the
+ * index is loaded. This keeps the index in step with the header readers.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+class EcatIndex {
+
+	// "ECATIDX" plus a format version
+
+	private static final long MAGIC = 0x4543415449445801L;
+
+	// the bytes of the ints that start each entry: the directory entry and the
+	//   length of the subheader
+
+	private static final int ENTRY_INTS_SIZE = 5 * 4;
+
+	final EcatMainHeader mainHeader;
+	final EcatDirectory directory;
+	final EcatSubheader[] subheaders;
+
+	private EcatIndex(EcatMainHeader mainHeader, EcatDirectory directory, EcatSubheader[] subheaders) {
+		this.mainHeader = mainHeader;
+		this.directory = directory;
+		this.subheaders = subheaders;
+	}
+
+	/**
+	 * Returns the sidecar index file of an ecat file.
+	 * 
+	 * @param file
+	 * @return
+	 */
+	static File sidecar(File file) {
+		return new File(file.getPath() + ".idx");
+	}
+
+	/**
+	 * Load the index of an ecat file.
+	 * 
+	 * @param sidecar The index file.
+	 * @param size The current size of the ecat file.
+	 * @param modified The current modification time of the ecat file.
+	 * @return The index or null if there is no index, it does not match the
+	 *           ecat file or it cannot be parsed.
+	 */
+	static EcatIndex read(File sidecar, long size, long modified) {
+
+		// the bytes that follow the magic number, size, time, main header and count
+
+		long remaining = sidecar.length() - (3 * 8 + 512 + 4);
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)))) {
+
+			if (in.readLong() != MAGIC || in.readLong() != size || in.readLong() != modified)
+				return null;
+
+			byte[] raw = new byte[512];
+			in.readFully(raw);
+			EcatMainHeader mainHeader = EcatMainHeader.read(new BufferEcatInput(ByteBuffer.wrap(raw)));
+
+			boolean big = mainHeader.fileIsBigEndian;
+
+			// every entry takes at least 5 ints so a count the index cannot hold
+			//   comes from a corrupt index
+
+			int count = in.readInt();
+			if (count < 0 || count > remaining / ENTRY_INTS_SIZE)
+				return null;
+
+			List<EcatDirectory.Entry> entries = new ArrayList<>();
+			EcatSubheader[] subheaders = new EcatSubheader[count];
+
+			for (int i = 0; i < count; i++) {
+
+				entries.add(new EcatDirectory.Entry(in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+
+				int len = in.readInt();
+				remaining -= ENTRY_INTS_SIZE;
+				if (len < 0 || len > 2048 || len > remaining)
+					return null;
+				remaining -= len;
+
+				if (len > 0) {
+					raw = new byte[len];
+					in.readFully(raw);
+					EcatInput shData = new BufferEcatInput(ByteBuffer.wrap(raw));
+					shData.order(big ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+					subheaders[i] = EcatSubheader.read(shData, mainHeader.fileType, big);
+				}
+			}
+
+			return new EcatIndex(mainHeader, new EcatDirectory(entries), subheaders);
+
+		} catch (IOException | RuntimeException e) {
+
+			// no index or one that cannot be parsed (truncated or corrupt): the
+			//   caller reads the headers from the file
+
+			return null;
+		}
+	}
+
+	/**
+	 * Write the index of an ecat file. The index is written to a temporary
+	 * file that then replaces the sidecar so readers never see part of one.
+	 * 
+	 * @param sidecar The index file.
+	 * @param size The size of the ecat file.
+	 * @param modified The modification time of the ecat file.
+	 * @param mainHeader The raw 512 bytes of the main header.
+	 * @param directory
+	 * @param subheaders The raw bytes of each subheader (empty for unknown types).
+	 * @throws IOException
+	 */
+	static void write(File sidecar, long size, long modified, byte[] mainHeader,
+						EcatDirectory directory, byte[][] subheaders)
+		throws IOException
+	{
+		File dir = sidecar.getAbsoluteFile().getParentFile();
+
+		File tmp = File.createTempFile(sidecar.getName(), ".tmp", dir);
+
+		try {
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+				out.writeLong(MAGIC);
+				out.writeLong(size);
+				out.writeLong(modified);
+				out.write(mainHeader);
+				out.writeInt(directory.size());
+
+				for (int i = 0; i < directory.size(); i++) {
+
+					EcatDirectory.Entry entry = directory.get(i);
+
+					out.writeInt(entry.matrixNumber);
+					out.writeInt(entry.subheaderBlockNum);
+					out.writeInt(entry.lastBlock);
+					out.writeInt(entry.status);
+					out.writeInt(subheaders[i].length);
+					out.write(subheaders[i]);
+				}
+			}
+
+			Files.move(tmp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} finally {
+
+			tmp.delete();
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A source of ecat bytes. The plain read methods decode big endian values just
+ * like a DataInputStream does. The ordered read methods decode values in the
+ * byte order of the file (as set by order()).
+ *
+ * @author Barry DeZonia
+ *
+ */
+abstract class EcatInput implements Closeable {
+
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	private byte[] scratch = new byte[0];
+
+	/**
+	 * Open an input for the given URI. Local files are memory mapped. All
+	 * other URIs are read sequentially from a stream.
+	 *
+	 * @param uri
+	 * @return
+	 * @throws IOException
+	 */
+	static EcatInput open(URI uri) throws IOException {
+
+		return open(uri, false);
+	}
+
+	/**
+	 * Open an input for the given URI. Local files are memory mapped. Files
+	 * on web servers that support range requests are downloaded piecemeal
+	 * as they are read. All other URIs are read sequentially from a stream.
+	 * Gzipped data is recognized by its magic number and decompressed on
+	 * the fly.
+	 *
+	 * @param uri
+	 * @param compressedIndex True to use (or make) the seek index of gzipped
+	 *          local files.
+	 * @return
+	 * @throws IOException
+	 */
+	static EcatInput open(URI uri, boolean compressedIndex) throws IOException {
+
+		byte[] magic = new byte[4];
+
+		if ("file".equals(uri.getScheme())) {
+
+			File file = new File(uri);
+
+			int n;
+			try (InputStream in = new FileInputStream(file)) {
+				n = in.readNBytes(magic, 0, magic.length);
+			}
+
+			if (GzipEcatInput.isGzip(magic, n))
+				return GzipEcatInput.open(file, compressedIndex);
+
+			checkNotZstd(uri, magic, n);
+
+			return BufferEcatInput.map(file);
+		}
+
+		// web servers that honor range requests are read a block at a time on demand.
+		//   gzipped files cannot be read out of order so they are streamed.
+
+		String scheme = uri.getScheme();
+
+		if ("http".equals(scheme) || "https".equals(scheme)) {
+
+			HttpEcatInput http = HttpEcatInput.open(uri.toURL());
+
+			if (http != null) {
+
+				int n = (int) Math.min(magic.length, http.length());
+
+				http.readFully(magic, 0, n);
+
+				http.seek(0);
+
+				if (!GzipEcatInput.isGzip(magic, n)) {
+
+					checkNotZstd(uri, magic, n);
+
+					return http;
+				}
+
+				http.close();
+			}
+		}
+
+		BufferedInputStream in = new BufferedInputStream(uri.toURL().openStream());
+
+		try {
+
+			in.mark(magic.length);
+			int n = in.readNBytes(magic, 0, magic.length);
+			in.reset();
+
+			if (GzipEcatInput.isGzip(magic, n))
+				return new StreamEcatInput(new GZIPInputStream(in, 1 << 16));
+
+			checkNotZstd(uri, magic, n);
+
+			return new StreamEcatInput(in);
+
+		} catch (IOException | RuntimeException e) {
+
+			in.close();
+
+			throw e;
+		}
+	}
+
+	// the jdk has no zstandard decoder so say so rather than failing on garbage
+
+	private static void checkNotZstd(URI uri, byte[] magic, int n) throws IOException {
+		if (GzipEcatInput.isZstd(magic, n))
+			throw new IOException(uri+" is zstandard compressed which is not supported: decompress it or recompress it with gzip");
+	}
+
+	abstract byte readByte() throws IOException;
+
+	abstract short readShort() throws IOException;
+
+	abstract int readInt() throws IOException;
+
+	abstract void readFully(byte[] b, int off, int len) throws IOException;
+
+	float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	abstract long position();
+
+	abstract void skip(long numBytes) throws IOException;
+
+	/**
+	 * Move to the given byte offset of the data. Inputs that are not random
+	 * access can only move forward.
+	 *
+	 * @param pos
+	 * @throws IOException
+	 */
+	abstract void seek(long pos) throws IOException;
+
+	/**
+	 * Returns true if the input can seek backwards as well as forwards.
+	 */
+	boolean isRandomAccess() {
+		return false;
+	}
+
+	ByteOrder order() {
+		return order;
+	}
+
+	void order(ByteOrder order) {
+		this.order = order;
+	}
+
+	boolean isBigEndian() {
+		return order == ByteOrder.BIG_ENDIAN;
+	}
+
+	void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	short readOrderedShort() throws IOException {
+		short v = readShort();
+		if (!isBigEndian()) v = Short.reverseBytes(v);
+		return v;
+	}
+
+	int readOrderedInt() throws IOException {
+		int v = readInt();
+		if (!isBigEndian()) v = Integer.reverseBytes(v);
+		return v;
+	}
+
+	/**
+	 * Read a run of shorts that were stored in the given byte order.
+	 *
+	 * @param dst
+	 * @param off
+	 * @param len
+	 * @param byteOrder
+	 * @throws IOException
+	 */
+	void readShorts(short[] dst, int off, int len, ByteOrder byteOrder) throws IOException {
+		ByteBuffer bb = fill(2 * len, byteOrder);
+		bb.asShortBuffer().get(dst, off, len);
+	}
+
+	/**
+	 * Read a run of ints that were stored in the given byte order.
+	 *
+	 * @param dst
+	 * @param off
+	 * @param len
+	 * @param byteOrder
+	 * @throws IOException
+	 */
+	void readInts(int[] dst, int off, int len, ByteOrder byteOrder) throws IOException {
+		ByteBuffer bb = fill(4 * len, byteOrder);
+		bb.asIntBuffer().get(dst, off, len);
+	}
+
+	private ByteBuffer fill(int numBytes, ByteOrder byteOrder) throws IOException {
+		if (scratch.length < numBytes)
+			scratch = new byte[numBytes];
+		readFully(scratch, 0, numBytes);
+		return ByteBuffer.wrap(scratch, 0, numBytes).order(byteOrder);
+	}
+}
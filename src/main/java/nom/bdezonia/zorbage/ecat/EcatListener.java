@@ -0,0 +1,105 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.net.URI;
+
+/**
+ * Receives progress and timing events while ecat data is read. Every method
+ * does nothing by default so implementations only override the events they
+ * care about. When frames are decoded in parallel (see
+ * {@link EcatOptions#setExecutor}) the methods can be called from several
+ * threads at once.
+ *
+ * @author Barry DeZonia
+ *
+ */
+public interface EcatListener {
+
+	/**
+	 * A listener that ignores every event. This is the default.
+	 */
+	EcatListener NONE = new EcatListener() { };
+
+	/**
+	 * Called after a dataset has been allocated.
+	 *
+	 * @param name The name of the dataset.
+	 * @param numBytes The approximate number of bytes the dataset occupies.
+	 */
+	default void datasetAllocated(String name, long numBytes) { }
+
+	/**
+	 * Called after the pixels of a frame have been decoded.
+	 *
+	 * @param name The name of the dataset.
+	 * @param numBytes The number of pixel bytes read from the file.
+	 * @param nanos The time the decoding took in nanoseconds.
+	 */
+	default void frameDecoded(String name, long numBytes, long nanos) { }
+
+	/**
+	 * Called after a frame's scale factor has been applied in a separate pass.
+	 * This only happens in EXACT scaling mode. In the other modes the scaling
+	 * is part of the decode time.
+	 *
+	 * @param name The name of the dataset.
+	 * @param scaleFactor The scale factor that was applied.
+	 * @param nanos The time the scaling took in nanoseconds.
+	 */
+	default void frameScaled(String name, double scaleFactor, long nanos) { }
+
+	/**
+	 * Called with the statistics of a frame once it has been decoded. This
+	 * only happens when statistics are turned on (see
+	 * {@link EcatOptions#setStatistics}).
+	 *
+	 * @param name The name of the dataset.
+	 * @param stats The statistics of the frame's values.
+	 */
+	default void frameStats(String name, EcatStats stats) { }
+
+	/**
+	 * Called once a whole file has been read.
+	 *
+	 * @param fileURI The file that was read.
+	 * @param numBytes The total number of pixel bytes that were read.
+	 * @param nanos The time the whole read took in nanoseconds.
+	 */
+	default void fileRead(URI fileURI, long numBytes, long nanos) { }
+
+	/**
+	 * Called when reading a file fails part way (or closing it fails) in a
+	 * call that does not throw, such as {@link Ecat#readAllDatasets}. The
+	 * datasets read before the failure are still returned.
+	 *
+	 * @param fileURI The file that was being read.
+	 * @param error What went wrong.
+	 */
+	default void fileFailed(URI fileURI, Exception error) { }
+
+	/**
+	 * Called when a file is opened whose matrices are of a file type that
+	 * cannot be read. The file's headers can still be read but it yields no
+	 * datasets.
+	 *
+	 * @param fileURI The file that was opened.
+	 * @param fileType The file type code from the main header.
+	 */
+	default void fileTypeUnsupported(URI fileURI, short fileType) { }
+}
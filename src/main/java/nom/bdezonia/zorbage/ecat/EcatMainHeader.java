@@ -0,0 +1,520 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The ecat 7 main header that starts every ecat file.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatMainHeader implements Cloneable {
+
+	boolean fileIsBigEndian = true;
+
+	String magicNumber;
+	String fname;
+	short swVersion;
+	short systemType;
+	short fileType;
+	String serialNumber;
+	int scanStartTime;
+	String isotopeName;
+	float isotopeHalflife;
+	String radiopharmaceutical;
+	float gantryTilt;
+	float gantryRotation;
+	float bedElevation;
+	float intrinsicTilt;
+	short wobbleSpeed;
+	short transmissionSourceType;
+	float distanceScanned;
+	float transaxialFOV;
+	short angularCompression;
+	short coinSampleMode;
+	short axialSampleMode;
+	float ecatCalibrationFactor;
+	short calibrationUnits;
+	short calibrationUnitsLabel;
+	short compressionCode;
+	String studyType;
+	String patientId;
+	String patientName;
+	String patientSex;
+	String patientDexterity;
+	float patientAge;
+	float patientHeight;
+	float patientWeight;
+	int patientBirthDate;
+	String physicianName;
+	String operatorName;
+	String studyDescription;
+	short acquisitionType;
+	short patientOrientation;
+	String facilityName;
+	short numPlanes;
+	short numFrames;
+	short numGates;
+	short numBedPositions;
+	float[] bedPositions;
+	float planeSeparation;
+	short lwrSctrThresh;
+	short lwrTrueThresh;
+	short uprTrueThresh;
+	String userProcessCode;
+	short acquisitionMode;
+	float binSize;
+	float branchingFraction;
+	int doseStartTime;
+	float dosage;
+	float wellCounterCorrFactor;
+	String dataUnits;
+	short septaState;
+
+	// only the reader makes these
+	
+	EcatMainHeader() { }
+
+	/**
+	 * True if the file was written big endian (the ecat 7 norm).
+	 */
+	public boolean isFileBigEndian() {
+		return fileIsBigEndian;
+	}
+
+	public String getMagicNumber() {
+		return magicNumber;
+	}
+
+	public String getFname() {
+		return fname;
+	}
+
+	public short getSwVersion() {
+		return swVersion;
+	}
+
+	public short getSystemType() {
+		return systemType;
+	}
+
+	public short getFileType() {
+		return fileType;
+	}
+
+	public String getSerialNumber() {
+		return serialNumber;
+	}
+
+	public int getScanStartTime() {
+		return scanStartTime;
+	}
+
+	public String getIsotopeName() {
+		return isotopeName;
+	}
+
+	public float getIsotopeHalflife() {
+		return isotopeHalflife;
+	}
+
+	public String getRadiopharmaceutical() {
+		return radiopharmaceutical;
+	}
+
+	public float getGantryTilt() {
+		return gantryTilt;
+	}
+
+	public float getGantryRotation() {
+		return gantryRotation;
+	}
+
+	public float getBedElevation() {
+		return bedElevation;
+	}
+
+	public float getIntrinsicTilt() {
+		return intrinsicTilt;
+	}
+
+	public short getWobbleSpeed() {
+		return wobbleSpeed;
+	}
+
+	public short getTransmissionSourceType() {
+		return transmissionSourceType;
+	}
+
+	public float getDistanceScanned() {
+		return distanceScanned;
+	}
+
+	public float getTransaxialFOV() {
+		return transaxialFOV;
+	}
+
+	public short getAngularCompression() {
+		return angularCompression;
+	}
+
+	public short getCoinSampleMode() {
+		return coinSampleMode;
+	}
+
+	public short getAxialSampleMode() {
+		return axialSampleMode;
+	}
+
+	public float getEcatCalibrationFactor() {
+		return ecatCalibrationFactor;
+	}
+
+	public short getCalibrationUnits() {
+		return calibrationUnits;
+	}
+
+	public short getCalibrationUnitsLabel() {
+		return calibrationUnitsLabel;
+	}
+
+	public short getCompressionCode() {
+		return compressionCode;
+	}
+
+	public String getStudyType() {
+		return studyType;
+	}
+
+	public String getPatientId() {
+		return patientId;
+	}
+
+	public String getPatientName() {
+		return patientName;
+	}
+
+	public String getPatientSex() {
+		return patientSex;
+	}
+
+	public String getPatientDexterity() {
+		return patientDexterity;
+	}
+
+	public float getPatientAge() {
+		return patientAge;
+	}
+
+	public float getPatientHeight() {
+		return patientHeight;
+	}
+
+	public float getPatientWeight() {
+		return patientWeight;
+	}
+
+	public int getPatientBirthDate() {
+		return patientBirthDate;
+	}
+
+	public String getPhysicianName() {
+		return physicianName;
+	}
+
+	public String getOperatorName() {
+		return operatorName;
+	}
+
+	public String getStudyDescription() {
+		return studyDescription;
+	}
+
+	public short getAcquisitionType() {
+		return acquisitionType;
+	}
+
+	public short getPatientOrientation() {
+		return patientOrientation;
+	}
+
+	public String getFacilityName() {
+		return facilityName;
+	}
+
+	public short getNumPlanes() {
+		return numPlanes;
+	}
+
+	public short getNumFrames() {
+		return numFrames;
+	}
+
+	public short getNumGates() {
+		return numGates;
+	}
+
+	public short getNumBedPositions() {
+		return numBedPositions;
+	}
+
+	/**
+	 * The 16 bed offsets recorded in the main header.
+	 */
+	public float[] getBedPositions() {
+		return bedPositions.clone();
+	}
+
+	public float getPlaneSeparation() {
+		return planeSeparation;
+	}
+
+	public short getLwrSctrThresh() {
+		return lwrSctrThresh;
+	}
+
+	public short getLwrTrueThresh() {
+		return lwrTrueThresh;
+	}
+
+	public short getUprTrueThresh() {
+		return uprTrueThresh;
+	}
+
+	public String getUserProcessCode() {
+		return userProcessCode;
+	}
+
+	public short getAcquisitionMode() {
+		return acquisitionMode;
+	}
+
+	public float getBinSize() {
+		return binSize;
+	}
+
+	public float getBranchingFraction() {
+		return branchingFraction;
+	}
+
+	public int getDoseStartTime() {
+		return doseStartTime;
+	}
+
+	public float getDosage() {
+		return dosage;
+	}
+
+	public float getWellCounterCorrFactor() {
+		return wellCounterCorrFactor;
+	}
+
+	public String getDataUnits() {
+		return dataUnits;
+	}
+
+	public short getSeptaState() {
+		return septaState;
+	}
+
+	/**
+	 * Read the 512 byte main header from the start of an ecat file. Sets the
+	 * byte order of the input to match the file as a side effect.
+	 * 
+	 * @param data
+	 * @return
+	 * @throws IOException
+	 */
+	static EcatMainHeader read(EcatInput data) throws IOException {
+		
+		EcatMainHeader h = new EcatMainHeader();
+		
+		h.readFields(data);
+		
+		return h;
+	}
+	
+	private void readFields(EcatInput data) throws IOException {
+
+		magicNumber = Ecat.readString(data, 14);
+		fname = Ecat.readString(data, 32);
+		swVersion = Ecat.readShort(data, false);
+		systemType = Ecat.readShort(data, false);
+		fileType = Ecat.readShort(data, false);
+
+		if (fileType < 0 || fileType > 127) {
+			swVersion = Ecat.swapShort(swVersion);
+			systemType = Ecat.swapShort(systemType);
+			fileType = Ecat.swapShort(fileType);
+			fileIsBigEndian = false;
+		}
+
+		data.order(fileIsBigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+		serialNumber = Ecat.readString(data, 10);
+		scanStartTime = Ecat.readInt(data, fileIsBigEndian);
+		isotopeName = Ecat.readString(data, 8);
+		isotopeHalflife = Ecat.readFloat(data, fileIsBigEndian);
+		radiopharmaceutical = Ecat.readString(data, 32);
+		gantryTilt = Ecat.readFloat(data, fileIsBigEndian);
+		gantryRotation = Ecat.readFloat(data, fileIsBigEndian);
+		bedElevation = Ecat.readFloat(data, fileIsBigEndian);
+		intrinsicTilt = Ecat.readFloat(data, fileIsBigEndian);
+		wobbleSpeed = Ecat.readShort(data, fileIsBigEndian);
+		transmissionSourceType = Ecat.readShort(data, fileIsBigEndian);
+		distanceScanned = Ecat.readFloat(data, fileIsBigEndian);
+		transaxialFOV = Ecat.readFloat(data, fileIsBigEndian);
+		angularCompression = Ecat.readShort(data, fileIsBigEndian);
+		coinSampleMode = Ecat.readShort(data, fileIsBigEndian);
+		axialSampleMode = Ecat.readShort(data, fileIsBigEndian);
+		ecatCalibrationFactor = Ecat.readFloat(data, fileIsBigEndian);
+		calibrationUnits = Ecat.readShort(data, fileIsBigEndian);
+		calibrationUnitsLabel = Ecat.readShort(data, fileIsBigEndian);
+		compressionCode = Ecat.readShort(data, fileIsBigEndian);
+		studyType = Ecat.readString(data, 12);
+		patientId = Ecat.readString(data, 16);
+		patientName = Ecat.readString(data, 32);
+		patientSex = Ecat.readString(data, 1);
+		patientDexterity = Ecat.readString(data, 1);
+		patientAge = Ecat.readFloat(data, fileIsBigEndian);
+		patientHeight = Ecat.readFloat(data, fileIsBigEndian);
+		patientWeight = Ecat.readFloat(data, fileIsBigEndian);
+		patientBirthDate = Ecat.readInt(data, fileIsBigEndian);
+		physicianName = Ecat.readString(data, 32);
+		operatorName = Ecat.readString(data, 32);
+		studyDescription = Ecat.readString(data, 32);
+		acquisitionType = Ecat.readShort(data, fileIsBigEndian);
+		patientOrientation = Ecat.readShort(data, fileIsBigEndian);
+		facilityName = Ecat.readString(data, 20);
+		numPlanes = Ecat.readShort(data, fileIsBigEndian);
+		numFrames = Ecat.readShort(data, fileIsBigEndian);
+		numGates = Ecat.readShort(data, fileIsBigEndian);
+		numBedPositions = Ecat.readShort(data, fileIsBigEndian);
+		bedPositions = new float[16];
+		for (int i = 0; i < bedPositions.length; i++) {
+			bedPositions[i] = Ecat.readFloat(data, fileIsBigEndian);
+		}
+		planeSeparation = Ecat.readFloat(data, fileIsBigEndian);
+		lwrSctrThresh = Ecat.readShort(data, fileIsBigEndian);
+		lwrTrueThresh = Ecat.readShort(data, fileIsBigEndian);
+		uprTrueThresh = Ecat.readShort(data, fileIsBigEndian);
+		userProcessCode = Ecat.readString(data, 10);
+		acquisitionMode = Ecat.readShort(data, fileIsBigEndian);
+		binSize = Ecat.readFloat(data, fileIsBigEndian);
+		branchingFraction = Ecat.readFloat(data, fileIsBigEndian);
+		doseStartTime = Ecat.readInt(data, fileIsBigEndian);
+		dosage = Ecat.readFloat(data, fileIsBigEndian);
+		wellCounterCorrFactor = Ecat.readFloat(data, fileIsBigEndian);
+		dataUnits = Ecat.readString(data, 32);
+		septaState = Ecat.readShort(data, fileIsBigEndian);
+		data.skip(2 * 6);  // fillA
+	}
+
+	/**
+	 * Write the header in the layout read() expects. The buffer must be big
+	 * endian, zero filled and have 512 bytes remaining.
+	 * 
+	 * @param buf
+	 */
+	void write(ByteBuffer buf) {
+
+		Ecat.writeString(buf, magicNumber, 14);
+		Ecat.writeString(buf, fname, 32);
+		
+		// little endian files are recognized by their byte swapped file type
+		
+		Ecat.writeShort(buf, fileIsBigEndian ? swVersion : Ecat.swapShort(swVersion), true);
+		Ecat.writeShort(buf, fileIsBigEndian ? systemType : Ecat.swapShort(systemType), true);
+		Ecat.writeShort(buf, fileIsBigEndian ? fileType : Ecat.swapShort(fileType), true);
+
+		Ecat.writeString(buf, serialNumber, 10);
+		Ecat.writeInt(buf, scanStartTime, fileIsBigEndian);
+		Ecat.writeString(buf, isotopeName, 8);
+		Ecat.writeFloat(buf, isotopeHalflife, fileIsBigEndian);
+		Ecat.writeString(buf, radiopharmaceutical, 32);
+		Ecat.writeFloat(buf, gantryTilt, fileIsBigEndian);
+		Ecat.writeFloat(buf, gantryRotation, fileIsBigEndian);
+		Ecat.writeFloat(buf, bedElevation, fileIsBigEndian);
+		Ecat.writeFloat(buf, intrinsicTilt, fileIsBigEndian);
+		Ecat.writeShort(buf, wobbleSpeed, fileIsBigEndian);
+		Ecat.writeShort(buf, transmissionSourceType, fileIsBigEndian);
+		Ecat.writeFloat(buf, distanceScanned, fileIsBigEndian);
+		Ecat.writeFloat(buf, transaxialFOV, fileIsBigEndian);
+		Ecat.writeShort(buf, angularCompression, fileIsBigEndian);
+		Ecat.writeShort(buf, coinSampleMode, fileIsBigEndian);
+		Ecat.writeShort(buf, axialSampleMode, fileIsBigEndian);
+		Ecat.writeFloat(buf, ecatCalibrationFactor, fileIsBigEndian);
+		Ecat.writeShort(buf, calibrationUnits, fileIsBigEndian);
+		Ecat.writeShort(buf, calibrationUnitsLabel, fileIsBigEndian);
+		Ecat.writeShort(buf, compressionCode, fileIsBigEndian);
+		Ecat.writeString(buf, studyType, 12);
+		Ecat.writeString(buf, patientId, 16);
+		Ecat.writeString(buf, patientName, 32);
+		Ecat.writeString(buf, patientSex, 1);
+		Ecat.writeString(buf, patientDexterity, 1);
+		Ecat.writeFloat(buf, patientAge, fileIsBigEndian);
+		Ecat.writeFloat(buf, patientHeight, fileIsBigEndian);
+		Ecat.writeFloat(buf, patientWeight, fileIsBigEndian);
+		Ecat.writeInt(buf, patientBirthDate, fileIsBigEndian);
+		Ecat.writeString(buf, physicianName, 32);
+		Ecat.writeString(buf, operatorName, 32);
+		Ecat.writeString(buf, studyDescription, 32);
+		Ecat.writeShort(buf, acquisitionType, fileIsBigEndian);
+		Ecat.writeShort(buf, patientOrientation, fileIsBigEndian);
+		Ecat.writeString(buf, facilityName, 20);
+		Ecat.writeShort(buf, numPlanes, fileIsBigEndian);
+		Ecat.writeShort(buf, numFrames, fileIsBigEndian);
+		Ecat.writeShort(buf, numGates, fileIsBigEndian);
+		Ecat.writeShort(buf, numBedPositions, fileIsBigEndian);
+		for (int i = 0; i < 16; i++) {
+			Ecat.writeFloat(buf, bedPositions == null ? 0 : bedPositions[i], fileIsBigEndian);
+		}
+		Ecat.writeFloat(buf, planeSeparation, fileIsBigEndian);
+		Ecat.writeShort(buf, lwrSctrThresh, fileIsBigEndian);
+		Ecat.writeShort(buf, lwrTrueThresh, fileIsBigEndian);
+		Ecat.writeShort(buf, uprTrueThresh, fileIsBigEndian);
+		Ecat.writeString(buf, userProcessCode, 10);
+		Ecat.writeShort(buf, acquisitionMode, fileIsBigEndian);
+		Ecat.writeFloat(buf, binSize, fileIsBigEndian);
+		Ecat.writeFloat(buf, branchingFraction, fileIsBigEndian);
+		Ecat.writeInt(buf, doseStartTime, fileIsBigEndian);
+		Ecat.writeFloat(buf, dosage, fileIsBigEndian);
+		Ecat.writeFloat(buf, wellCounterCorrFactor, fileIsBigEndian);
+		Ecat.writeString(buf, dataUnits, 32);
+		Ecat.writeShort(buf, septaState, fileIsBigEndian);
+		buf.position(buf.position() + 2 * 6);  // fillA
+	}
+	
+	/**
+	 * Make an independent copy of the header.
+	 */
+	EcatMainHeader copy() {
+		try {
+			EcatMainHeader h = (EcatMainHeader) super.clone();
+			if (bedPositions != null)
+				h.bedPositions = bedPositions.clone();
+			return h;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import nom.bdezonia.zorbage.coordinates.Cylindrical3dCoordinateSpace;
+import nom.bdezonia.zorbage.coordinates.Polar2dCoordinateSpace;
+
+/**
+ * The ecat 7 subheader of a 3d normalization (file type 13) matrix.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatNormalizationSubheader extends EcatSubheader {
+
+	short numRElements;
+	short numAngles;
+	short numZElements;
+	short ringDifference;
+	short storageOrder;
+	short span;
+	short[] zElements;
+	float normMin;
+	float normMax;
+	float fov_source_width;
+	float norm_quality_factor;
+	short norm_quality_factor_code;
+
+	// only the reader makes these
+	
+	EcatNormalizationSubheader() { }
+
+	public short getNumRElements() {
+		return numRElements;
+	}
+
+	public short getNumAngles() {
+		return numAngles;
+	}
+
+	public short getNumZElements() {
+		return numZElements;
+	}
+
+	public short getRingDifference() {
+		return ringDifference;
+	}
+
+	public short getStorageOrder() {
+		return storageOrder;
+	}
+
+	public short getSpan() {
+		return span;
+	}
+
+	public short[] getZElements() {
+		return zElements.clone();
+	}
+
+	public float getNormMin() {
+		return normMin;
+	}
+
+	public float getNormMax() {
+		return normMax;
+	}
+
+	public float getFovSourceWidth() {
+		return fov_source_width;
+	}
+
+	public float getNormQualityFactor() {
+		return norm_quality_factor;
+	}
+
+	public short getNormQualityFactorCode() {
+		return norm_quality_factor_code;
+	}
+
+	@Override
+	double headerMin() {
+		return normMin;
+	}
+
+	@Override
+	double headerMax() {
+		return normMax;
+	}
+
+	@Override
+	void readFields(EcatInput data, boolean fileIsBigEndian) throws IOException {
+
+		double rUnit=0, thetaUnit=0, zUnit=0;
+		
+		dataType = Ecat.readShort(data, fileIsBigEndian);
+		numDimensions = Ecat.readShort(data, fileIsBigEndian);
+		numRElements = Ecat.readShort(data, fileIsBigEndian);
+		numAngles = Ecat.readShort(data, fileIsBigEndian);
+		numZElements = Ecat.readShort(data, fileIsBigEndian);
+		dims = new long[numDimensions];
+		if (numDimensions > 0)
+			dims[0] = numRElements;
+		if (numDimensions > 1)
+			dims[1] = numAngles;
+		if (numDimensions > 2)
+			dims[2] = numZElements;
+		for (int i = 3; i < numDimensions; i++) {
+			dims[i] = 1;
+		}
+		ringDifference = Ecat.readShort(data, fileIsBigEndian);
+		scaleFactor = Ecat.readFloat(data, fileIsBigEndian);
+		normMin = Ecat.readFloat(data, fileIsBigEndian);
+		normMax = Ecat.readFloat(data, fileIsBigEndian);
+		signedDataFlag = normMin < 0;
+		fov_source_width = Ecat.readFloat(data, fileIsBigEndian);
+		norm_quality_factor = Ecat.readFloat(data, fileIsBigEndian);
+		norm_quality_factor_code = Ecat.readShort(data, fileIsBigEndian);
+		storageOrder = Ecat.readShort(data, fileIsBigEndian);
+		span = Ecat.readShort(data, fileIsBigEndian);
+		zElements = new short[64];
+		for (int i = 0; i < zElements.length; i++) {
+			zElements[i] = Ecat.readShort(data, fileIsBigEndian);
+		}
+		data.skip(2 * 123);  // fillCti
+		data.skip(2 * 50);  // fillUser
+		rUnit = 1.0;  // TODO do this better
+		thetaUnit = Math.PI * 2 / numAngles;
+		zUnit =  1.0;  // TODO do this better
+		if (numZElements > 1) {
+			coordSpace = new Cylindrical3dCoordinateSpace(
+					BigDecimal.valueOf(rUnit),
+					BigDecimal.valueOf(thetaUnit),
+					BigDecimal.valueOf(zUnit)
+					);
+			axisNames = new String[3];
+			axisNames[0] = "r";
+			axisNames[1] = "theta";
+			axisNames[2] = "z";
+		}
+		else {
+			coordSpace = new Polar2dCoordinateSpace(
+					BigDecimal.valueOf(rUnit),
+					BigDecimal.valueOf(thetaUnit)
+					);
+			axisNames = new String[2];
+			axisNames[0] = "r";
+			axisNames[1] = "theta";
+		}
+	}
+}
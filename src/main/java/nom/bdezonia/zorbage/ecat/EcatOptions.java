@@ -0,0 +1,274 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.util.concurrent.Executor;
+
+import nom.bdezonia.zorbage.storage.StorageConstruction;
+
+/**
+ * Settings that control how ecat files are read. A default constructed
+ * EcatOptions reproduces the behavior of the plain readAllDatasets() calls.
+ *
+ * @author Barry DeZonia
+ *
+ */
+public class EcatOptions {
+
+	/**
+	 * How a frame's scale factor is applied when it is not 1.
+	 */
+	public enum ScaleMode {
+
+		/**
+		 * The accurate mode. Frames are decoded in their native type. Integer
+		 * data is then multiplied by the scale factor with high precision math
+		 * and rounded once into a float32 dataset. Float data is scaled in place.
+		 * This is the slowest mode.
+		 */
+		EXACT,
+
+		/**
+		 * Apply the scale factor while decoding using primitive double math and
+		 * write float32 output. VAX float data stays float64. For 8 and 16 bit
+		 * data the results match EXACT. For 32 bit data an occasional result may
+		 * differ from EXACT in the last bit.
+		 */
+		FLOAT32,
+
+		/**
+		 * Apply the scale factor while decoding using primitive double math and
+		 * write float64 output.
+		 */
+		FLOAT64
+	}
+
+	private ScaleMode scaleMode = ScaleMode.EXACT;
+	private Executor executor = null;
+	private EcatListener listener = EcatListener.NONE;
+	private EcatRegion region = null;
+	private StorageConstruction storage = StorageConstruction.MEM_ARRAY;
+	private EcatFrameCache frameCache = null;
+	private boolean sidecarIndex = false;
+	private boolean statistics = false;
+	private int histogramBins = 256;
+	private boolean compressedIndex = false;
+
+	/**
+	 * Make a set of options with default values.
+	 */
+	public EcatOptions() { }
+
+	/**
+	 * Returns how scale factors are applied. The default is EXACT.
+	 */
+	public ScaleMode getScaleMode() {
+		return scaleMode;
+	}
+
+	/**
+	 * Sets how scale factors are applied.
+	 *
+	 * @param mode
+	 */
+	public void setScaleMode(ScaleMode mode) {
+		if (mode == null)
+			throw new IllegalArgumentException("scale mode cannot be null");
+		this.scaleMode = mode;
+	}
+
+	/**
+	 * Returns the executor frames are decoded on when a whole file is read.
+	 * The default is null which means frames are decoded one after another
+	 * on the calling thread.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor frames are decoded on when a whole file is read. Each
+	 * frame is decoded as a separate task. The resulting DataBundle holds the
+	 * frames in the same order as a serial read. Only local (memory mapped)
+	 * files are decoded in parallel. Other sources are always read serially.
+	 *
+	 * @param executor The executor to use or null to decode serially.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the listener that is told about reading progress and timings.
+	 * The default is EcatListener.NONE which ignores everything.
+	 */
+	public EcatListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Sets the listener that is told about reading progress and timings.
+	 *
+	 * @param listener
+	 */
+	public void setListener(EcatListener listener) {
+		if (listener == null)
+			throw new IllegalArgumentException("listener cannot be null");
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the region of each matrix that is read. The default is null
+	 * which means whole matrices are read.
+	 */
+	public EcatRegion getRegion() {
+		return region;
+	}
+
+	/**
+	 * Sets the region of each matrix that is read. Only the pixels inside the
+	 * region are allocated and decoded. The rest of each matrix is skipped.
+	 *
+	 * @param region The region to read or null to read whole matrices.
+	 */
+	public void setRegion(EcatRegion region) {
+		this.region = region;
+	}
+
+	/**
+	 * Returns the kind of storage decoded datasets are allocated in. The
+	 * default is MEM_ARRAY (arrays on the java heap).
+	 */
+	public StorageConstruction getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Sets the kind of storage decoded datasets are allocated in. MEM_VIRTUAL
+	 * keeps the pixels in a temporary file with only a small window of them
+	 * in memory. Use it to read studies that are larger than the heap.
+	 *
+	 * @param storage
+	 */
+	public void setStorage(StorageConstruction storage) {
+		if (storage == null)
+			throw new IllegalArgumentException("storage cannot be null");
+		this.storage = storage;
+	}
+
+	/**
+	 * Returns the cache decoded frames are kept in. The default is null
+	 * which means frames are decoded every time they are read.
+	 */
+	public EcatFrameCache getFrameCache() {
+		return frameCache;
+	}
+
+	/**
+	 * Sets the cache decoded frames are kept in. Reads that share a cache
+	 * only decode a frame of a local file once as long as it stays cached.
+	 *
+	 * @param frameCache The cache to use or null to not cache frames.
+	 */
+	public void setFrameCache(EcatFrameCache frameCache) {
+		this.frameCache = frameCache;
+	}
+
+	/**
+	 * Returns true if local files are opened through a sidecar index. The
+	 * default is false.
+	 */
+	public boolean getSidecarIndex() {
+		return sidecarIndex;
+	}
+
+	/**
+	 * Sets whether local files are opened through a sidecar index. When true
+	 * a file "x.v" is opened using the headers saved in "x.v.idx" if that
+	 * index is up to date with the file. If it is not the headers are read
+	 * from the file and a new index is written next to it. Large files on
+	 * slow (network) storage then reopen without reading any headers.
+	 *
+	 * @param sidecarIndex
+	 */
+	public void setSidecarIndex(boolean sidecarIndex) {
+		this.sidecarIndex = sidecarIndex;
+	}
+
+	/**
+	 * Returns true if statistics are gathered for each frame as it is
+	 * decoded. The default is false.
+	 */
+	public boolean getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Sets whether statistics (min, max, sum, mean and a histogram) are
+	 * gathered for each frame as it is decoded. They are handed to the
+	 * listener and can be had from EcatFile.stats().
+	 *
+	 * @param statistics
+	 */
+	public void setStatistics(boolean statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Returns the number of bins of the statistics histograms. The default
+	 * is 256.
+	 */
+	public int getHistogramBins() {
+		return histogramBins;
+	}
+
+	/**
+	 * Sets the number of bins of the statistics histograms.
+	 *
+	 * @param bins
+	 */
+	public void setHistogramBins(int bins) {
+		if (bins < 1)
+			throw new IllegalArgumentException("histogram must have at least one bin");
+		this.histogramBins = bins;
+	}
+
+	/**
+	 * Returns true if gzipped local files are opened through a seek index.
+	 * The default is false.
+	 */
+	public boolean getCompressedIndex() {
+		return compressedIndex;
+	}
+
+	/**
+	 * Sets whether gzipped local files are opened through a seek index. A
+	 * gzipped file "x.v.gz" is always read in one forward pass. Jumping back
+	 * (to a frame that was already passed) means inflating again from the
+	 * last gzip member boundary before it. When this option is on the member
+	 * boundaries are found up front and saved in "x.v.gz.gzi" (the bgzip
+	 * index format) so any frame can be reached from its nearest boundary.
+	 * Files compressed with bgzip have a boundary every 64K and benefit the
+	 * most. A file compressed with plain gzip is a single member.
+	 *
+	 * @param compressedIndex
+	 */
+	public void setCompressedIndex(boolean compressedIndex) {
+		this.compressedIndex = compressedIndex;
+	}
+}
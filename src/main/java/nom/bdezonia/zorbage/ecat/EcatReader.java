@@ -0,0 +1,129 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.net.URI;
+
+import nom.bdezonia.zorbage.misc.DataBundle;
+
+/**
+ * A reader that can be used for many ecat files one after another. It keeps
+ * its pixel decoding buffers and directory scratch space between files so
+ * reading a long list of files does not allocate them over and over. A reader
+ * is not thread safe: give each thread its own. Unlike Ecat.readAllDatasets()
+ * errors are thrown to the caller rather than printed.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatReader {
+
+	private final EcatOptions options;
+	private final PixelDecoder decoder = new PixelDecoder();
+	private final int[] dirNode = new int[EcatDirectory.NODE_INTS];
+
+	/**
+	 * Make a reader that uses default options.
+	 */
+	public EcatReader() {
+		this(new EcatOptions());
+	}
+
+	/**
+	 * Make a reader that reads every file with the given options.
+	 * 
+	 * @param options
+	 */
+	public EcatReader(EcatOptions options) {
+		if (options == null)
+			throw new IllegalArgumentException("options cannot be null");
+		this.options = options;
+	}
+
+	/**
+	 * Returns the options every file is read with.
+	 */
+	public EcatOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * Read all the datasets of a file.
+	 * 
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public DataBundle read(String filename) throws IOException {
+
+		return read(Ecat.fileURI(filename));
+	}
+
+	/**
+	 * Read all the datasets of a file.
+	 * 
+	 * @param fileURI
+	 * @return
+	 * @throws IOException
+	 */
+	public DataBundle read(URI fileURI) throws IOException {
+
+		DataBundle images = new DataBundle();
+
+		long start = System.nanoTime();
+
+		try (EcatFile file = open(fileURI)) {
+
+			file.loadAll(images);
+
+			options.getListener().fileRead(fileURI, file.bytesRead(), System.nanoTime() - start);
+		}
+
+		return images;
+	}
+
+	/**
+	 * Reads the main header and all the matrix subheaders of a file without
+	 * reading any pixel data.
+	 * 
+	 * @param fileURI
+	 * @return
+	 * @throws IOException
+	 */
+	public EcatHeaders readHeaders(URI fileURI) throws IOException {
+
+		try (EcatFile file = open(fileURI)) {
+
+			return file.headers();
+		}
+	}
+
+	/**
+	 * Open a file that shares this reader's buffers. The file must be used on
+	 * the reader's thread and closed before the reader opens another one.
+	 * 
+	 * @param fileURI
+	 * @return
+	 * @throws IOException
+	 */
+	public EcatFile open(URI fileURI) throws IOException {
+
+		return EcatFile.open(fileURI, options, decoder, dirNode);
+	}
+}
@@ -0,0 +1,140 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+/**
+ * A box shaped part of a matrix: a window on its first two axes (x and y for
+ * images, r and theta for sinograms) over a range of planes. Reading a region
+ * only allocates and decodes the pixels inside it. Extents that run past the
+ * edge of a matrix are clipped to the matrix.
+ * <p>
+ * The coordinate space of an image region is the space of the matrix moved
+ * to the region's first voxel, so voxels keep their real world positions.
+ * Sinogram spaces (polar and cylindrical) have no origin to move: regions of
+ * those that do not start at the matrix origin have no coordinate space.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatRegion {
+
+	private final long x;
+	private final long y;
+	private final long width;
+	private final long height;
+	private final long firstPlane;
+	private final long numPlanes;
+
+	/**
+	 * 
+	 * @param x The first column.
+	 * @param y The first row.
+	 * @param width The number of columns.
+	 * @param height The number of rows.
+	 * @param firstPlane The first plane (counting from 0).
+	 * @param numPlanes The number of planes.
+	 */
+	public EcatRegion(long x, long y, long width, long height, long firstPlane, long numPlanes) {
+		if (x < 0 || y < 0 || firstPlane < 0)
+			throw new IllegalArgumentException("region origin cannot be negative");
+		if (width < 1 || height < 1 || numPlanes < 1)
+			throw new IllegalArgumentException("region extents must be positive");
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.firstPlane = firstPlane;
+		this.numPlanes = numPlanes;
+	}
+
+	/**
+	 * Make a region that covers whole planes.
+	 * 
+	 * @param firstPlane
+	 * @param numPlanes
+	 * @return
+	 */
+	public static EcatRegion planes(long firstPlane, long numPlanes) {
+		return new EcatRegion(0, 0, Long.MAX_VALUE, Long.MAX_VALUE, firstPlane, numPlanes);
+	}
+
+	/**
+	 * Make a region that covers the same window of every plane.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static EcatRegion window(long x, long y, long width, long height) {
+		return new EcatRegion(x, y, width, height, 0, Long.MAX_VALUE);
+	}
+
+	public long getX() {
+		return x;
+	}
+
+	public long getY() {
+		return y;
+	}
+
+	public long getWidth() {
+		return width;
+	}
+
+	public long getHeight() {
+		return height;
+	}
+
+	public long getFirstPlane() {
+		return firstPlane;
+	}
+
+	public long getNumPlanes() {
+		return numPlanes;
+	}
+
+	/**
+	 * Returns the same window over a single plane.
+	 * 
+	 * @param plane
+	 * @return
+	 */
+	EcatRegion plane(long plane) {
+		return new EcatRegion(x, y, width, height, plane, 1);
+	}
+
+	/**
+	 * Returns this region trimmed to fit a matrix of the given size.
+	 * 
+	 * @param cols
+	 * @param rows
+	 * @param planes
+	 * @return
+	 */
+	EcatRegion clip(long cols, long rows, long planes) {
+		if (x >= cols || y >= rows || firstPlane >= planes)
+			throw new IllegalArgumentException("region lies outside of the "+cols+" x "+rows+" x "+planes+" matrix");
+		return new EcatRegion(x, y,
+								Math.min(width, cols - x),
+								Math.min(height, rows - y),
+								firstPlane,
+								Math.min(numPlanes, planes - firstPlane));
+	}
+}
@@ -0,0 +1,340 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import nom.bdezonia.zorbage.coordinates.Cylindrical3dCoordinateSpace;
+import nom.bdezonia.zorbage.coordinates.Polar2dCoordinateSpace;
+
+/**
+ * The ecat 7 subheader of a 3d scan (sinogram, file type 11) matrix.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatScanSubheader extends EcatSubheader {
+
+	short numRElements;
+	short numAngles;
+	short numZElements;
+	short ringDifference;
+	float xResolution;
+	float yResolution;
+	float zResolution;
+	float wResolution;
+	int gateDuration;
+	int rWaveOffset;
+	int numAcceptedBeats;
+	int frameStartTime;
+	int frameDuration;
+	short correctionsApplied;
+	short scanMin;
+	short scanMax;
+	int prompts;
+	int delayed;
+	int multiples;
+	int netTrues;
+	float[] corSingles;
+	float[] uncorSingles;
+	float totAvgCor;
+	float totAvgUncor;
+	int totCoinRate;
+	float lossCorrectionFactor;
+	int[] physicalPlanes;
+
+	// only the reader makes these
+	
+	EcatScanSubheader() { }
+
+	public short getNumRElements() {
+		return numRElements;
+	}
+
+	public short getNumAngles() {
+		return numAngles;
+	}
+
+	public short getNumZElements() {
+		return numZElements;
+	}
+
+	public short getRingDifference() {
+		return ringDifference;
+	}
+
+	public float getXResolution() {
+		return xResolution;
+	}
+
+	public float getYResolution() {
+		return yResolution;
+	}
+
+	public float getZResolution() {
+		return zResolution;
+	}
+
+	public float getWResolution() {
+		return wResolution;
+	}
+
+	public int getGateDuration() {
+		return gateDuration;
+	}
+
+	public int getRWaveOffset() {
+		return rWaveOffset;
+	}
+
+	public int getNumAcceptedBeats() {
+		return numAcceptedBeats;
+	}
+
+	public int getFrameStartTime() {
+		return frameStartTime;
+	}
+
+	public int getFrameDuration() {
+		return frameDuration;
+	}
+
+	public short getCorrectionsApplied() {
+		return correctionsApplied;
+	}
+
+	public short getScanMin() {
+		return scanMin;
+	}
+
+	public short getScanMax() {
+		return scanMax;
+	}
+
+	public int getPrompts() {
+		return prompts;
+	}
+
+	public int getDelayed() {
+		return delayed;
+	}
+
+	public int getMultiples() {
+		return multiples;
+	}
+
+	public int getNetTrues() {
+		return netTrues;
+	}
+
+	public float[] getCorSingles() {
+		return corSingles.clone();
+	}
+
+	public float[] getUncorSingles() {
+		return uncorSingles.clone();
+	}
+
+	public float getTotAvgCor() {
+		return totAvgCor;
+	}
+
+	public float getTotAvgUncor() {
+		return totAvgUncor;
+	}
+
+	public int getTotCoinRate() {
+		return totCoinRate;
+	}
+
+	public float getLossCorrectionFactor() {
+		return lossCorrectionFactor;
+	}
+
+	public int[] getPhysicalPlanes() {
+		return physicalPlanes.clone();
+	}
+
+	@Override
+	int numBlocks() {
+		// the 3d scan subheader is twice the size of the others
+		return 2;
+	}
+
+	@Override
+	double headerMin() {
+		return scanMin;
+	}
+
+	@Override
+	double headerMax() {
+		return scanMax;
+	}
+
+	@Override
+	int frameStart() {
+		return frameStartTime;
+	}
+
+	@Override
+	int frameLength() {
+		return frameDuration;
+	}
+
+	@Override
+	void readFields(EcatInput data, boolean fileIsBigEndian) throws IOException {
+
+		double rUnit=0, thetaUnit=0, zUnit=0;
+		
+		dataType = Ecat.readShort(data, fileIsBigEndian);
+		numDimensions = Ecat.readShort(data, fileIsBigEndian);
+		numRElements = Ecat.readShort(data, fileIsBigEndian);
+		numAngles = Ecat.readShort(data, fileIsBigEndian);
+		correctionsApplied = Ecat.readShort(data, fileIsBigEndian);
+		numZElements = Ecat.readShort(data, fileIsBigEndian);
+		dims = new long[numDimensions];
+		if (numDimensions > 0)
+			dims[0] = numRElements;
+		if (numDimensions > 1)
+			dims[1] = numAngles;
+		if (numDimensions > 2)
+			dims[2] = numZElements;
+		for (int i = 3; i < numDimensions; i++) {
+			dims[i] = 1;
+		}
+		ringDifference = Ecat.readShort(data, fileIsBigEndian);
+		xResolution = Ecat.readFloat(data, fileIsBigEndian);
+		yResolution = Ecat.readFloat(data, fileIsBigEndian);
+		zResolution = Ecat.readFloat(data, fileIsBigEndian);
+		wResolution = Ecat.readFloat(data, fileIsBigEndian);
+		data.skip(2 * 6);  // fill
+		gateDuration = Ecat.readInt(data, fileIsBigEndian); // TODO: make unsigned
+		rWaveOffset = Ecat.readInt(data, fileIsBigEndian);
+		numAcceptedBeats = Ecat.readInt(data, fileIsBigEndian);
+		scaleFactor = Ecat.readFloat(data, fileIsBigEndian);
+		scanMin = Ecat.readShort(data, fileIsBigEndian);
+		scanMax = Ecat.readShort(data, fileIsBigEndian);
+		signedDataFlag = scanMin < 0;
+		prompts = Ecat.readInt(data, fileIsBigEndian);
+		delayed = Ecat.readInt(data, fileIsBigEndian);
+		multiples = Ecat.readInt(data, fileIsBigEndian);
+		netTrues = Ecat.readInt(data, fileIsBigEndian);
+		corSingles = new float[16];
+		for (int i = 0; i < corSingles.length; i++) {
+			corSingles[i] = Ecat.readFloat(data, fileIsBigEndian);
+		}
+		uncorSingles = new float[16];
+		for (int i = 0; i < uncorSingles.length; i++) {
+			uncorSingles[i] = Ecat.readFloat(data, fileIsBigEndian);
+		}
+		totAvgCor = Ecat.readFloat(data, fileIsBigEndian);
+		totAvgUncor = Ecat.readFloat(data, fileIsBigEndian);
+		totCoinRate = Ecat.readInt(data, fileIsBigEndian);
+		frameStartTime = Ecat.readInt(data, fileIsBigEndian);
+		frameDuration = Ecat.readInt(data, fileIsBigEndian);
+		lossCorrectionFactor = Ecat.readFloat(data, fileIsBigEndian);
+		physicalPlanes = new int[8];
+		for (int i = 0; i < physicalPlanes.length; i++) {
+			physicalPlanes[i] = Ecat.readInt(data, fileIsBigEndian);
+		}
+		data.skip(2 * 83);  // fillCti
+		if (Ecat.readInt(data, fileIsBigEndian) == SIGNED_MARK)  // fillUser
+			signedDataFlag = true;
+		rUnit = xResolution;
+		thetaUnit = yResolution;
+		zUnit = zResolution;
+		if (numZElements > 1) {
+			coordSpace = new Cylindrical3dCoordinateSpace(
+					BigDecimal.valueOf(rUnit),
+					BigDecimal.valueOf(thetaUnit),
+					BigDecimal.valueOf(zUnit)
+					);
+			axisNames = new String[3];
+			axisNames[0] = "r";
+			axisNames[1] = "theta";
+			axisNames[2] = "z";
+		}
+		else {
+			coordSpace = new Polar2dCoordinateSpace(
+					BigDecimal.valueOf(rUnit),
+					BigDecimal.valueOf(thetaUnit)
+					);
+			axisNames = new String[2];
+			axisNames[0] = "r";
+			axisNames[1] = "theta";
+		}
+	}
+
+	@Override
+	void writeFields(ByteBuffer buf, boolean fileIsBigEndian) {
+
+		Ecat.writeShort(buf, dataType, fileIsBigEndian);
+		Ecat.writeShort(buf, numDimensions, fileIsBigEndian);
+		Ecat.writeShort(buf, numRElements, fileIsBigEndian);
+		Ecat.writeShort(buf, numAngles, fileIsBigEndian);
+		Ecat.writeShort(buf, correctionsApplied, fileIsBigEndian);
+		Ecat.writeShort(buf, numZElements, fileIsBigEndian);
+		Ecat.writeShort(buf, ringDifference, fileIsBigEndian);
+		Ecat.writeFloat(buf, xResolution, fileIsBigEndian);
+		Ecat.writeFloat(buf, yResolution, fileIsBigEndian);
+		Ecat.writeFloat(buf, zResolution, fileIsBigEndian);
+		Ecat.writeFloat(buf, wResolution, fileIsBigEndian);
+		buf.position(buf.position() + 2 * 6);  // fill
+		Ecat.writeInt(buf, gateDuration, fileIsBigEndian);
+		Ecat.writeInt(buf, rWaveOffset, fileIsBigEndian);
+		Ecat.writeInt(buf, numAcceptedBeats, fileIsBigEndian);
+		Ecat.writeFloat(buf, scaleFactor, fileIsBigEndian);
+		Ecat.writeShort(buf, scanMin, fileIsBigEndian);
+		Ecat.writeShort(buf, scanMax, fileIsBigEndian);
+		Ecat.writeInt(buf, prompts, fileIsBigEndian);
+		Ecat.writeInt(buf, delayed, fileIsBigEndian);
+		Ecat.writeInt(buf, multiples, fileIsBigEndian);
+		Ecat.writeInt(buf, netTrues, fileIsBigEndian);
+		for (int i = 0; i < 16; i++) {
+			Ecat.writeFloat(buf, corSingles == null ? 0 : corSingles[i], fileIsBigEndian);
+		}
+		for (int i = 0; i < 16; i++) {
+			Ecat.writeFloat(buf, uncorSingles == null ? 0 : uncorSingles[i], fileIsBigEndian);
+		}
+		Ecat.writeFloat(buf, totAvgCor, fileIsBigEndian);
+		Ecat.writeFloat(buf, totAvgUncor, fileIsBigEndian);
+		Ecat.writeInt(buf, totCoinRate, fileIsBigEndian);
+		Ecat.writeInt(buf, frameStartTime, fileIsBigEndian);
+		Ecat.writeInt(buf, frameDuration, fileIsBigEndian);
+		Ecat.writeFloat(buf, lossCorrectionFactor, fileIsBigEndian);
+		for (int i = 0; i < 8; i++) {
+			Ecat.writeInt(buf, physicalPlanes == null ? 0 : physicalPlanes[i], fileIsBigEndian);
+		}
+		buf.position(buf.position() + 2 * 83);  // fillCti
+		Ecat.writeInt(buf, signedDataFlag ? SIGNED_MARK : 0, fileIsBigEndian);  // fillUser
+	}
+
+	@Override
+	EcatScanSubheader copy() {
+		EcatScanSubheader sh = (EcatScanSubheader) super.copy();
+		if (corSingles != null)
+			sh.corSingles = corSingles.clone();
+		if (uncorSingles != null)
+			sh.uncorSingles = uncorSingles.clone();
+		if (physicalPlanes != null)
+			sh.physicalPlanes = physicalPlanes.clone();
+		return sh;
+	}
+}
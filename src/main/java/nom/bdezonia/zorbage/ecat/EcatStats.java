@@ -0,0 +1,311 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+/**
+ * Statistics of the values of one decoded frame: count, min, max, sum, mean
+ * and a histogram. They are gathered while the frame is decoded (see
+ * {@link EcatOptions#setStatistics}) so getting them costs no extra pass over
+ * the data. Values are in the units of the dataset: scale factors have been
+ * applied. NaN values are not counted.
+ * <p>
+ * The histogram spans the value range the subheader records for the frame
+ * (imageMin / imageMax, scanMin / scanMax, etc.). When the subheader has no
+ * usable range integer data is binned over the whole range of its type and
+ * float data gets no histogram. Values outside the range are counted in the
+ * first or last bin.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatStats {
+
+	private final long count;
+	private final double min;
+	private final double max;
+	private final double sum;
+	private final long[] histogram;
+	private final double histogramMin;
+	private final double histogramMax;
+	private final double headerMin;
+	private final double headerMax;
+	private final boolean matchesHeader;
+
+	private EcatStats(long count, double min, double max, double sum, long[] histogram,
+						double histogramMin, double histogramMax,
+						double headerMin, double headerMax, boolean matchesHeader)
+	{
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.sum = sum;
+		this.histogram = histogram;
+		this.histogramMin = histogramMin;
+		this.histogramMax = histogramMax;
+		this.headerMin = headerMin;
+		this.headerMax = headerMax;
+		this.matchesHeader = matchesHeader;
+	}
+
+	/**
+	 * Returns the number of values.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the smallest value or NaN if there are no values.
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the largest value or NaN if there are no values.
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the sum of the values.
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * Returns the mean of the values or NaN if there are no values.
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * Returns the counts of the histogram bins. The bins are of equal width
+	 * and evenly divide the range from getHistogramMin() to getHistogramMax().
+	 * The array is empty if no histogram was made.
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+
+	/**
+	 * Returns the lower edge of the first histogram bin.
+	 */
+	public double getHistogramMin() {
+		return histogramMin;
+	}
+
+	/**
+	 * Returns the upper edge of the last histogram bin.
+	 */
+	public double getHistogramMax() {
+		return histogramMax;
+	}
+
+	/**
+	 * Returns the minimum the subheader records for the frame (scaled) or NaN
+	 * if it records none.
+	 */
+	public double getHeaderMin() {
+		return headerMin;
+	}
+
+	/**
+	 * Returns the maximum the subheader records for the frame (scaled) or NaN
+	 * if it records none.
+	 */
+	public double getHeaderMax() {
+		return headerMax;
+	}
+
+	/**
+	 * Returns true if the subheader records a value range and the decoded
+	 * values span exactly that range. A frame that was read through a region
+	 * may legitimately not match.
+	 */
+	public boolean matchesHeader() {
+		return matchesHeader;
+	}
+
+	/**
+	 * Gathers the statistics of one frame from the raw (unscaled) values as
+	 * they are decoded. An accumulator is only used by one thread.
+	 */
+	static class Accumulator {
+
+		private final double lo;
+		private final double hi;
+		private final double binsPerUnit;
+		private final long[] bins;
+		private final double headerMin;
+		private final double headerMax;
+		private long count;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		private double sum;
+
+		/**
+		 * Make an accumulator for a frame.
+		 * 
+		 * @param sh The subheader of the frame.
+		 * @param numBins The number of histogram bins.
+		 */
+		Accumulator(EcatSubheader sh, int numBins) {
+
+			headerMin = sh.headerMin();
+			headerMax = sh.headerMax();
+
+			double l = headerMin;
+			double h = headerMax;
+
+			if (!(l < h)) {
+				l = rawMin(sh.dataType, sh.signedDataFlag);
+				h = rawMax(sh.dataType, sh.signedDataFlag);
+			}
+
+			lo = l;
+			hi = h;
+			bins = (lo < hi) ? new long[numBins] : new long[0];
+			binsPerUnit = (lo < hi) ? numBins / (hi - lo) : 0;
+		}
+
+		void add(double v) {
+			if (v != v)
+				return;
+			if (v < min) min = v;
+			if (v > max) max = v;
+			sum += v;
+			count++;
+			if (bins.length > 0) {
+				int b = (int) ((v - lo) * binsPerUnit);
+				if (b < 0) b = 0;
+				if (b >= bins.length) b = bins.length - 1;
+				bins[b]++;
+			}
+		}
+
+		void addBytes(byte[] values, int n, boolean signed) {
+			if (signed) {
+				for (int i = 0; i < n; i++)
+					add(values[i]);
+			}
+			else {
+				for (int i = 0; i < n; i++)
+					add(values[i] & 0xff);
+			}
+		}
+
+		void addShorts(short[] values, int n, boolean signed) {
+			if (signed) {
+				for (int i = 0; i < n; i++)
+					add(values[i]);
+			}
+			else {
+				for (int i = 0; i < n; i++)
+					add(values[i] & 0xffff);
+			}
+		}
+
+		void addInts(int[] values, int n, boolean signed) {
+			if (signed) {
+				for (int i = 0; i < n; i++)
+					add(values[i]);
+			}
+			else {
+				for (int i = 0; i < n; i++)
+					add(values[i] & 0xffffffffL);
+			}
+		}
+
+		void addDoubles(double[] values, int n) {
+			for (int i = 0; i < n; i++)
+				add(values[i]);
+		}
+
+		/**
+		 * Returns the statistics of the values in the units of the dataset.
+		 * 
+		 * @param scale The scale factor that was applied to the frame (1 if none).
+		 * @param float32 True if the dataset holds float32 values.
+		 * @return
+		 */
+		EcatStats finish(double scale, boolean float32) {
+
+			boolean matches = headerMin == headerMin && headerMax == headerMax &&
+								count > 0 && min == headerMin && max == headerMax;
+
+			double smin = count == 0 ? Double.NaN : round(Math.min(min * scale, max * scale), float32);
+			double smax = count == 0 ? Double.NaN : round(Math.max(min * scale, max * scale), float32);
+
+			long[] hist = bins.clone();
+
+			// a negative scale factor flips the order of the bins
+
+			if (scale < 0) {
+				for (int i = 0, j = hist.length - 1; i < j; i++, j--) {
+					long tmp = hist[i];
+					hist[i] = hist[j];
+					hist[j] = tmp;
+				}
+			}
+
+			return new EcatStats(count, smin, smax, sum * scale, hist,
+									Math.min(lo * scale, hi * scale), Math.max(lo * scale, hi * scale),
+									headerMin * scale, headerMax * scale, matches);
+		}
+
+		private static double round(double v, boolean float32) {
+			return float32 ? (float) v : v;
+		}
+
+		// the range of the raw values of integer data types. float types have none.
+
+		private static double rawMin(short dataType, boolean signed) {
+			switch (dataType) {
+			case 1:
+				return signed ? Byte.MIN_VALUE : 0;
+			case 2:
+			case 6:
+				return signed ? Short.MIN_VALUE : 0;
+			case 3:
+			case 7:
+				return signed ? Integer.MIN_VALUE : 0;
+			default:
+				return Double.NaN;
+			}
+		}
+
+		private static double rawMax(short dataType, boolean signed) {
+			switch (dataType) {
+			case 1:
+				return signed ? Byte.MAX_VALUE : 0xff;
+			case 2:
+			case 6:
+				return signed ? Short.MAX_VALUE : 0xffff;
+			case 3:
+			case 7:
+				return signed ? Integer.MAX_VALUE : 0xffffffffL;
+			default:
+				return Double.NaN;
+			}
+		}
+	}
+}
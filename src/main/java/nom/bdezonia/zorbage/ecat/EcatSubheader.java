@@ -0,0 +1,229 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import nom.bdezonia.zorbage.coordinates.CoordinateSpace;
+
+/**
+ * The fields that all ecat 7 matrix subheaders share. Each ecat file type
+ * has its own subheader layout which is handled by a subclass.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public abstract class EcatSubheader implements Cloneable {
+
+	short dataType = -4000;
+	short numDimensions = 0;
+	long[] dims = new long[0];
+	float scaleFactor = 0;
+	boolean signedDataFlag = false;
+	CoordinateSpace coordSpace = null;
+	String[] axisNames = new String[0];
+
+	// ecat has no unsigned pixel types so integer pixels are taken to be signed
+	//   when the subheader's minimum is negative. EcatWriter also stores this
+	//   mark in the user fill of the subheaders of signed frames so that they
+	//   read back signed when none of their pixels is negative.
+
+	static final int SIGNED_MARK = 0x5a534744;
+
+	// only the reader makes these
+	
+	EcatSubheader() { }
+
+	/**
+	 * The ecat data type code of the pixels (1 - 7). Zero or negative when the
+	 * matrix has no pixel data.
+	 */
+	public short getDataType() {
+		return dataType;
+	}
+
+	public short getNumDimensions() {
+		return numDimensions;
+	}
+
+	/**
+	 * The dimensions of the matrix as recorded in the subheader.
+	 */
+	public long[] getDimensions() {
+		return dims.clone();
+	}
+
+	public float getScaleFactor() {
+		return scaleFactor;
+	}
+
+	/**
+	 * True if the integer pixels are signed: the subheader's minimum value is
+	 * negative or the subheader was marked signed by an {@link EcatWriter}.
+	 */
+	public boolean isSignedData() {
+		return signedDataFlag;
+	}
+
+	public CoordinateSpace getCoordinateSpace() {
+		return coordSpace;
+	}
+
+	public String[] getAxisNames() {
+		return axisNames.clone();
+	}
+
+	/**
+	 * True if matrices of ecat files of the given file type can be read.
+	 * 
+	 * @param fileType
+	 * @return
+	 */
+	static boolean isSupported(short fileType) {
+		return fileType == 3 || fileType == 7 || fileType == 11 || fileType == 13;
+	}
+
+	/**
+	 * Read the subheader for a matrix of an ecat file of the given file type.
+	 * Returns null for file types that are not supported.
+	 * 
+	 * @param data
+	 * @param fileType
+	 * @param fileIsBigEndian
+	 * @return
+	 * @throws IOException
+	 */
+	static EcatSubheader read(EcatInput data, short fileType, boolean fileIsBigEndian) throws IOException {
+
+		EcatSubheader sh;
+		
+		switch (fileType) {
+		
+		case 3:  // attenuation data
+			sh = new EcatAttenuationSubheader();
+			break;
+			
+		case 7:  // image data
+			sh = new EcatImageSubheader();
+			break;
+			
+		case 11:  // 3d scan (sinogram) data file
+			sh = new EcatScanSubheader();
+			break;
+			
+		case 13:  // 3d normalization
+			sh = new EcatNormalizationSubheader();
+			break;
+			
+		default:
+			// unknown file types have no pixel data we can read
+			return null;
+		}
+		
+		sh.readFields(data, fileIsBigEndian);
+		
+		return sh;
+	}
+
+	/**
+	 * The number of 512 byte blocks the subheader occupies on disk. Pixel data
+	 * starts at the block that follows.
+	 */
+	int numBlocks() {
+		return 1;
+	}
+	
+	/**
+	 * The smallest raw (unscaled) pixel value the subheader records for its
+	 * matrix or NaN if it records none.
+	 */
+	double headerMin() {
+		return Double.NaN;
+	}
+
+	/**
+	 * The largest raw (unscaled) pixel value the subheader records for its
+	 * matrix or NaN if it records none.
+	 */
+	double headerMax() {
+		return Double.NaN;
+	}
+
+	/**
+	 * The start of the matrix's frame in milliseconds or 0 if the subheader
+	 * records none.
+	 */
+	int frameStart() {
+		return 0;
+	}
+
+	/**
+	 * The length of the matrix's frame in milliseconds or 0 if the subheader
+	 * records none.
+	 */
+	int frameLength() {
+		return 0;
+	}
+
+	/**
+	 * The decay correction factor that was already applied to the pixels or 0
+	 * if the subheader records none.
+	 */
+	double decayCorrection() {
+		return 0;
+	}
+
+	/**
+	 * The coordinate space of the part of the matrix that starts at the given
+	 * column, row and plane. Null if the space of the matrix cannot be moved
+	 * to that origin.
+	 */
+	CoordinateSpace coordinateSpace(long x, long y, long plane) {
+		if (x == 0 && y == 0 && plane == 0)
+			return coordSpace;
+		return null;
+	}
+	
+	abstract void readFields(EcatInput data, boolean fileIsBigEndian) throws IOException;
+
+	/**
+	 * Write the fields in the layout readFields() expects. The buffer must be
+	 * big endian, zero filled and have 512 * numBlocks() bytes remaining.
+	 * 
+	 * @param buf
+	 * @param fileIsBigEndian
+	 */
+	void writeFields(ByteBuffer buf, boolean fileIsBigEndian) {
+		throw new UnsupportedOperationException("cannot write "+getClass().getSimpleName()+" matrices");
+	}
+
+	/**
+	 * Make an independent copy of the subheader.
+	 */
+	EcatSubheader copy() {
+		try {
+			EcatSubheader sh = (EcatSubheader) super.clone();
+			sh.dims = dims.clone();
+			sh.axisNames = axisNames.clone();
+			return sh;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
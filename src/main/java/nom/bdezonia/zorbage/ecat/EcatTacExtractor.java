@@ -0,0 +1,407 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nom.bdezonia.zorbage.algebra.Allocatable;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.datasource.IndexedDataSource;
+import nom.bdezonia.zorbage.type.integer.int16.SignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int16.UnsignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int32.SignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int32.UnsignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int8.SignedInt8Member;
+import nom.bdezonia.zorbage.type.integer.int8.UnsignedInt8Member;
+
+/**
+ * Extracts time activity curves for the regions of one or more label masks
+ * from every frame of a study. A mask is an integer dataset with the same
+ * dimensions as a frame and each nonzero label of a mask is a region. Masks
+ * can overlap.
+ * <p>
+ * The masks are first boiled down to a list of labeled voxels per plane. The
+ * frames are then streamed plane by plane and only the planes that some mask
+ * touches are read. No frame is ever decoded as a dataset so the memory used
+ * depends on the masks and not on the size of the study. When the file's
+ * options have an executor the planes of a local file are reduced in
+ * parallel.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class EcatTacExtractor {
+
+	private final List<Allocatable> types = new ArrayList<>();
+	private final List<DimensionedDataSource> masks = new ArrayList<>();
+
+	/**
+	 * Add a label mask. Its index is the number of masks added before it.
+	 * 
+	 * @param type A value of the mask's type. 8, 16 and 32 bit integers are
+	 *   supported.
+	 * @param mask
+	 */
+	public void addMask(Allocatable type, DimensionedDataSource mask) {
+		if (type == null)
+			throw new IllegalArgumentException("type cannot be null");
+		if (mask == null)
+			throw new IllegalArgumentException("mask cannot be null");
+		if (!(type instanceof UnsignedInt8Member || type instanceof SignedInt8Member ||
+				type instanceof UnsignedInt16Member || type instanceof SignedInt16Member ||
+				type instanceof UnsignedInt32Member || type instanceof SignedInt32Member))
+			throw new IllegalArgumentException("Unsupported mask type: "+type.getClass().getName());
+		types.add(type);
+		masks.add(mask);
+	}
+
+	/**
+	 * Returns the number of masks added.
+	 */
+	public int numMasks() {
+		return masks.size();
+	}
+
+	/**
+	 * Compute the curves of every region for every dataset of the file that
+	 * has pixels.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public EcatTacs compute(EcatFile file) throws IOException {
+		
+		if (file == null)
+			throw new IllegalArgumentException("file cannot be null");
+		if (masks.isEmpty())
+			throw new IllegalArgumentException("no masks were added");
+		
+		List<Integer> found = new ArrayList<>();
+		
+		for (int i = 0; i < file.numDatasets(); i++) {
+			EcatSubheader sh = file.subheader(i);
+			if (sh != null && sh.dataType > 0)
+				found.add(i);
+		}
+		
+		if (found.isEmpty())
+			throw new IllegalArgumentException("the file has no datasets with pixels");
+		
+		int numFrames = found.size();
+		
+		int[] indices = new int[numFrames];
+		int[] starts = new int[numFrames];
+		int[] durations = new int[numFrames];
+		
+		for (int k = 0; k < numFrames; k++) {
+			EcatSubheader sh = file.subheader(found.get(k));
+			indices[k] = found.get(k);
+			starts[k] = sh.frameStart();
+			durations[k] = sh.frameLength();
+		}
+		
+		EcatSubheader first = file.subheader(indices[0]);
+		
+		long cols = first.dims[0];
+		long rows = first.dims[1];
+		long numPlanes = Math.max(1, (int) file.getMainHeader().numPlanes);
+		
+		for (int m = 0; m < masks.size(); m++) {
+			DimensionedDataSource mask = masks.get(m);
+			long planes = mask.numDimensions() > 2 ? mask.dimension(2) : 1;
+			if (mask.numDimensions() < 2 || mask.dimension(0) != cols || mask.dimension(1) != rows || planes != numPlanes)
+				throw new IllegalArgumentException("mask "+m+" does not match the "+cols+" x "+rows+" x "+numPlanes+" frames");
+		}
+		
+		// find the labeled voxels of every plane
+		
+		List<Integer> regionMasks = new ArrayList<>();
+		List<Long> regionLabels = new ArrayList<>();
+		
+		PlaneVoxels[] planes = findVoxels(cols * rows, (int) numPlanes, regionMasks, regionLabels);
+		
+		int numRegions = regionLabels.size();
+		
+		// number the regions by mask and then by label
+		
+		Integer[] order = new Integer[numRegions];
+		for (int r = 0; r < numRegions; r++) {
+			order[r] = r;
+		}
+		Arrays.sort(order, (a, b) -> {
+			int c = Integer.compare(regionMasks.get(a), regionMasks.get(b));
+			return c != 0 ? c : Long.compare(regionLabels.get(a), regionLabels.get(b));
+		});
+		
+		int[] renumber = new int[numRegions];
+		int[] masksOut = new int[numRegions];
+		long[] labelsOut = new long[numRegions];
+		long[] counts = new long[numRegions];
+		
+		for (int r = 0; r < numRegions; r++) {
+			renumber[order[r]] = r;
+			masksOut[r] = regionMasks.get(order[r]);
+			labelsOut[r] = regionLabels.get(order[r]);
+		}
+		
+		boolean[] touched = new boolean[(int) numPlanes];
+		
+		for (int p = 0; p < numPlanes; p++) {
+			
+			PlaneVoxels voxels = planes[p];
+			
+			if (voxels == null)
+				continue;
+			
+			touched[p] = true;
+			
+			for (int l = 0; l < voxels.regions.length; l++) {
+				voxels.regions[l] = renumber[voxels.regions[l]];
+			}
+			
+			for (int j = 0; j < voxels.locals.length; j++) {
+				counts[voxels.regions[voxels.locals[j]]]++;
+			}
+		}
+		
+		// stream the planes that the masks touch
+		
+		double[][] sums = new double[numFrames][numRegions];
+		
+		file.reducePlanes(indices, touched, new PlaneReducer<PlaneSums>() {
+
+			@Override
+			public PlaneSums start(long plane) {
+				return new PlaneSums(planes[(int) plane], numFrames);
+			}
+
+			@Override
+			public void add(PlaneSums state, int frame, int offset, double[] values, int count) {
+				
+				PlaneVoxels voxels = state.voxels;
+				
+				int base = frame * voxels.regions.length;
+				
+				int end = offset + count;
+				
+				for (int j = voxels.lowerBound(offset); j < voxels.offsets.length && voxels.offsets[j] < end; j++) {
+					
+					state.sums[base + voxels.locals[j]] += values[voxels.offsets[j] - offset];
+				}
+			}
+
+			@Override
+			public void finish(long plane, PlaneSums state) {
+				
+				int[] global = state.voxels.regions;
+				
+				synchronized (sums) {
+					for (int f = 0; f < numFrames; f++) {
+						for (int l = 0; l < global.length; l++) {
+							sums[f][global[l]] += state.sums[f * global.length + l];
+						}
+					}
+				}
+			}
+		});
+		
+		return new EcatTacs(indices, starts, durations, masksOut, labelsOut, counts, sums);
+	}
+
+	// Walk the masks plane by plane and list the labeled voxels of each plane in
+	//   offset order. Regions are numbered as they are first seen. Planes that no
+	//   mask touches are left null.
+	
+	private PlaneVoxels[] findVoxels(long planeSize, int numPlanes, List<Integer> regionMasks, List<Long> regionLabels) {
+		
+		int numMasks = masks.size();
+		
+		List<Map<Long, Integer>> ids = new ArrayList<>();
+		for (int m = 0; m < numMasks; m++) {
+			ids.add(new HashMap<>());
+		}
+		
+		PlaneVoxels[] planes = new PlaneVoxels[numPlanes];
+		
+		long[][] planeLabels = new long[numMasks][(int) planeSize];
+		
+		int[] offsets = new int[1024];
+		int[] found = new int[1024];
+		
+		for (int p = 0; p < numPlanes; p++) {
+			
+			for (int m = 0; m < numMasks; m++) {
+				labels(types.get(m), masks.get(m).rawData(), p * planeSize, planeLabels[m], (int) planeSize);
+			}
+			
+			int n = 0;
+			
+			for (int off = 0; off < planeSize; off++) {
+				
+				for (int m = 0; m < numMasks; m++) {
+					
+					long label = planeLabels[m][off];
+					
+					if (label == 0)
+						continue;
+					
+					Integer id = ids.get(m).get(label);
+					
+					if (id == null) {
+						id = regionLabels.size();
+						ids.get(m).put(label, id);
+						regionMasks.add(m);
+						regionLabels.add(label);
+					}
+					
+					if (n == offsets.length) {
+						offsets = Arrays.copyOf(offsets, 2 * n);
+						found = Arrays.copyOf(found, 2 * n);
+					}
+					
+					offsets[n] = off;
+					found[n] = id;
+					n++;
+				}
+			}
+			
+			if (n > 0)
+				planes[p] = new PlaneVoxels(Arrays.copyOf(offsets, n), Arrays.copyOf(found, n));
+		}
+		
+		return planes;
+	}
+	
+	// read n labels of a mask starting at index start
+	
+	private static void labels(Allocatable type, IndexedDataSource data, long start, long[] out, int n) {
+		
+		if (type instanceof UnsignedInt8Member) {
+			UnsignedInt8Member val = new UnsignedInt8Member();
+			for (int i = 0; i < n; i++) {
+				data.get(start + i, val);
+				out[i] = val.v();
+			}
+		}
+		else if (type instanceof SignedInt8Member) {
+			SignedInt8Member val = new SignedInt8Member();
+			for (int i = 0; i < n; i++) {
+				data.get(start + i, val);
+				out[i] = val.v();
+			}
+		}
+		else if (type instanceof UnsignedInt16Member) {
+			UnsignedInt16Member val = new UnsignedInt16Member();
+			for (int i = 0; i < n; i++) {
+				data.get(start + i, val);
+				out[i] = val.v();
+			}
+		}
+		else if (type instanceof SignedInt16Member) {
+			SignedInt16Member val = new SignedInt16Member();
+			for (int i = 0; i < n; i++) {
+				data.get(start + i, val);
+				out[i] = val.v();
+			}
+		}
+		else if (type instanceof UnsignedInt32Member) {
+			UnsignedInt32Member val = new UnsignedInt32Member();
+			for (int i = 0; i < n; i++) {
+				data.get(start + i, val);
+				out[i] = val.v();
+			}
+		}
+		else {
+			SignedInt32Member val = new SignedInt32Member();
+			for (int i = 0; i < n; i++) {
+				data.get(start + i, val);
+				out[i] = val.v();
+			}
+		}
+	}
+	
+	// The labeled voxels of one plane in offset order. A voxel in more than one
+	//   mask is listed once per mask. The regions that appear in the plane are
+	//   numbered locally: locals[j] is the local number of the region of voxel j
+	//   and regions[local] is its global number.
+	
+	private static class PlaneVoxels {
+		
+		final int[] offsets;
+		final int[] locals;
+		final int[] regions;
+		
+		PlaneVoxels(int[] offsets, int[] ids) {
+			
+			this.offsets = offsets;
+			this.locals = new int[ids.length];
+			
+			Map<Integer, Integer> local = new HashMap<>();
+			
+			for (int j = 0; j < ids.length; j++) {
+				Integer l = local.get(ids[j]);
+				if (l == null) {
+					l = local.size();
+					local.put(ids[j], l);
+				}
+				locals[j] = l;
+			}
+			
+			regions = new int[local.size()];
+			
+			for (Map.Entry<Integer, Integer> e : local.entrySet()) {
+				regions[e.getValue()] = e.getKey();
+			}
+		}
+		
+		// the first voxel at or after a plane offset
+		
+		int lowerBound(int offset) {
+			int lo = 0;
+			int hi = offsets.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (offsets[mid] < offset)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+	}
+	
+	// a plane's sums for the regions that appear in it: sums[frame * numLocal + local]
+	
+	private static class PlaneSums {
+		
+		final PlaneVoxels voxels;
+		final double[] sums;
+		
+		PlaneSums(PlaneVoxels voxels, int numFrames) {
+			this.voxels = voxels;
+			this.sums = new double[numFrames * voxels.regions.length];
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+/**
+ * Time activity curves: the sum, mean and voxel count of every labeled
+ * region of a set of masks in every frame of a study (see
+ * {@link EcatTacExtractor}). A region is one label value of one mask. Values
+ * are in the units of the datasets: scale factors have been applied.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class EcatTacs {
+
+	private final int[] datasets;
+	private final int[] frameStarts;
+	private final int[] frameDurations;
+	private final int[] masks;
+	private final long[] labels;
+	private final long[] voxelCounts;
+	private final double[][] sums;
+	
+	EcatTacs(int[] datasets, int[] frameStarts, int[] frameDurations,
+				int[] masks, long[] labels, long[] voxelCounts, double[][] sums)
+	{
+		this.datasets = datasets;
+		this.frameStarts = frameStarts;
+		this.frameDurations = frameDurations;
+		this.masks = masks;
+		this.labels = labels;
+		this.voxelCounts = voxelCounts;
+		this.sums = sums;
+	}
+
+	/**
+	 * Returns the number of frames the curves span.
+	 */
+	public int numFrames() {
+		return datasets.length;
+	}
+
+	/**
+	 * Returns the number of regions (mask and label pairs) that have curves.
+	 */
+	public int numRegions() {
+		return labels.length;
+	}
+
+	/**
+	 * Returns the index within the file of the dataset a frame came from.
+	 * 
+	 * @param frame
+	 * @return
+	 */
+	public int getDataset(int frame) {
+		return datasets[frame];
+	}
+
+	/**
+	 * Returns the start of a frame in milliseconds as recorded in its subheader.
+	 * 
+	 * @param frame
+	 * @return
+	 */
+	public int getFrameStart(int frame) {
+		return frameStarts[frame];
+	}
+
+	/**
+	 * Returns the length of a frame in milliseconds as recorded in its subheader.
+	 * 
+	 * @param frame
+	 * @return
+	 */
+	public int getFrameDuration(int frame) {
+		return frameDurations[frame];
+	}
+
+	/**
+	 * Returns the index (in the order they were added) of the mask a region
+	 * belongs to.
+	 * 
+	 * @param region
+	 * @return
+	 */
+	public int getMask(int region) {
+		return masks[region];
+	}
+
+	/**
+	 * Returns the label value of a region within its mask.
+	 * 
+	 * @param region
+	 * @return
+	 */
+	public long getLabel(int region) {
+		return labels[region];
+	}
+
+	/**
+	 * Returns the number of voxels in a region.
+	 * 
+	 * @param region
+	 * @return
+	 */
+	public long getVoxelCount(int region) {
+		return voxelCounts[region];
+	}
+
+	/**
+	 * Returns the region of a mask that has the given label or -1 if the mask
+	 * has no voxels with that label.
+	 * 
+	 * @param mask
+	 * @param label
+	 * @return
+	 */
+	public int indexOf(int mask, long label) {
+		for (int r = 0; r < labels.length; r++) {
+			if (masks[r] == mask && labels[r] == label)
+				return r;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the sum of a region's voxels in a frame.
+	 * 
+	 * @param frame
+	 * @param region
+	 * @return
+	 */
+	public double getSum(int frame, int region) {
+		return sums[frame][region];
+	}
+
+	/**
+	 * Returns the mean of a region's voxels in a frame.
+	 * 
+	 * @param frame
+	 * @param region
+	 * @return
+	 */
+	public double getMean(int frame, int region) {
+		return sums[frame][region] / voxelCounts[region];
+	}
+
+	/**
+	 * Returns the curve of a region: its mean in every frame.
+	 * 
+	 * @param region
+	 * @return
+	 */
+	public double[] getMeans(int region) {
+		double[] curve = new double[datasets.length];
+		for (int f = 0; f < curve.length; f++) {
+			curve[f] = getMean(f, region);
+		}
+		return curve;
+	}
+}
@@ -0,0 +1,600 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import nom.bdezonia.zorbage.algebra.Allocatable;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.datasource.IndexedDataSource;
+import nom.bdezonia.zorbage.type.integer.int16.SignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int16.UnsignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int32.SignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int32.UnsignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int8.SignedInt8Member;
+import nom.bdezonia.zorbage.type.integer.int8.UnsignedInt8Member;
+import nom.bdezonia.zorbage.type.real.float32.Float32Member;
+import nom.bdezonia.zorbage.type.real.float64.Float64Member;
+
+/**
+ * Writes ecat 7 image (file type 7) and 3d scan (file type 11) files. Frames
+ * are appended one at a time. Each frame's pixels are encoded straight from
+ * the dataset into a reusable buffer in the byte order of the file and then
+ * written with a FileChannel. The main header and the matrix directory are
+ * written when the writer is closed.
+ * <p>
+ * Big endian files (the default) are laid out the way the scanner software
+ * writes them. Little endian files are laid out the way this library reads
+ * them. 8, 16 and 32 bit integer frames keep their type: signed frames are
+ * marked signed in their subheader so they read back signed even when none
+ * of their pixels is negative. Float32 frames are written as 32 bit IEEE
+ * floats. Ecat has no 64 bit pixel type so float64 frames are narrowed to
+ * float32 and read back as float32: they lose precision past 24 bits and
+ * values beyond the float range become infinite.
+ * <p>
+ * The min / max fields of a subheader are shorts. The writer fills them in
+ * for 8 and 16 bit frames whose values fit in a short and leaves them 0 for
+ * other frames (32 bit integers, floats and unsigned 16 bit values above
+ * 32767) rather than record a clamped range. Readers then treat the frame as
+ * having no recorded range (see {@link EcatStats}). A writer is not thread
+ * safe.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class EcatWriter implements Closeable {
+
+	// the size of the buffer pixels are encoded into. a multiple of the block size.
+	
+	private static final int BUFFER_SIZE = 1 << 20;
+	
+	private static final int BLOCK_SIZE = 512;
+
+	// the number of matrix entries a directory node holds
+	
+	private static final int NODE_ENTRIES = 31;
+
+	// the frame number has 9 bits in a matrix number
+	
+	private static final int MAX_FRAMES = 511;
+	
+	private final FileChannel channel;
+	private final EcatMainHeader mainHeader;
+	private final boolean bigEndian;
+	private final ByteBuffer pixels = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private byte[] bytes;
+	private short[] shorts;
+	private int[] ints;
+	private final List<int[]> nodes = new ArrayList<>();
+	private final List<Integer> nodeBlocks = new ArrayList<>();
+	private int nextBlock;
+	private int numFrames = 0;
+	private int numPlanes = 0;
+	private boolean closed = false;
+
+	/**
+	 * Make a writer for a big endian file with default main header fields.
+	 * 
+	 * @param filename
+	 * @param fileType 7 (image) or 11 (3d scan).
+	 * @throws IOException
+	 */
+	public EcatWriter(String filename, int fileType) throws IOException {
+		this(filename, fileType, ByteOrder.BIG_ENDIAN, null);
+	}
+
+	/**
+	 * Make a writer.
+	 * 
+	 * @param filename
+	 * @param fileType 7 (image) or 11 (3d scan).
+	 * @param order The byte order of the file.
+	 * @param template A main header (such as one read from another file) whose
+	 *   patient, study and scanner fields are copied. Can be null.
+	 * @throws IOException
+	 */
+	public EcatWriter(String filename, int fileType, ByteOrder order, EcatMainHeader template)
+		throws IOException
+	{
+		if (filename == null)
+			throw new IllegalArgumentException("filename cannot be null");
+		if (fileType != 7 && fileType != 11)
+			throw new IllegalArgumentException("can only write image (7) and 3d scan (11) files: "+fileType);
+		if (order == null)
+			throw new IllegalArgumentException("byte order cannot be null");
+		
+		bigEndian = order == ByteOrder.BIG_ENDIAN;
+		
+		mainHeader = template == null ? defaultMainHeader() : template.copy();
+		mainHeader.fileType = (short) fileType;
+		mainHeader.fileIsBigEndian = bigEndian;
+		
+		// the main header is block 1 and the first directory node is block 2
+		
+		nodes.add(new int[EcatDirectory.NODE_INTS]);
+		nodeBlocks.add(EcatDirectory.FIRST_NODE_BLOCK);
+		nextBlock = EcatDirectory.FIRST_NODE_BLOCK + 1;
+		
+		channel = FileChannel.open(Paths.get(filename),
+									StandardOpenOption.CREATE,
+									StandardOpenOption.TRUNCATE_EXISTING,
+									StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Returns the number of frames written so far.
+	 */
+	public int numFrames() {
+		return numFrames;
+	}
+
+	/**
+	 * Append a frame whose subheader has default fields.
+	 * 
+	 * @param type A value of the frame's type (such as G.INT16.construct()).
+	 *   Float64 frames are narrowed to float32.
+	 * @param frame A 2d (one plane) or 3d (cols x rows x planes) dataset.
+	 * @throws IOException
+	 */
+	public void writeFrame(Allocatable type, DimensionedDataSource frame) throws IOException {
+		write(type, frame, defaultSubheader());
+	}
+
+	/**
+	 * Append a frame whose subheader has default fields and the given timing.
+	 * 
+	 * @param type A value of the frame's type (such as G.INT16.construct()).
+	 *   Float64 frames are narrowed to float32.
+	 * @param frame A 2d (one plane) or 3d (cols x rows x planes) dataset.
+	 * @param frameStartTime The start of the frame in milliseconds.
+	 * @param frameDuration The length of the frame in milliseconds.
+	 * @throws IOException
+	 */
+	public void writeFrame(Allocatable type, DimensionedDataSource frame, int frameStartTime, int frameDuration)
+		throws IOException
+	{
+		EcatSubheader sh = defaultSubheader();
+		if (sh instanceof EcatImageSubheader) {
+			((EcatImageSubheader) sh).frameStartTime = frameStartTime;
+			((EcatImageSubheader) sh).frameDuration = frameDuration;
+		}
+		else {
+			((EcatScanSubheader) sh).frameStartTime = frameStartTime;
+			((EcatScanSubheader) sh).frameDuration = frameDuration;
+		}
+		write(type, frame, sh);
+	}
+
+	/**
+	 * Append a frame whose subheader fields are copied from a template (such
+	 * as the subheader of the frame the pixels were computed from). The data
+	 * type, signedness, dimensions and min / max are replaced to describe the
+	 * new pixels.
+	 * Integer frames keep the template's scale factor and float frames get a
+	 * scale factor of 1.
+	 * 
+	 * @param type A value of the frame's type (such as G.INT16.construct()).
+	 *   Float64 frames are narrowed to float32.
+	 * @param frame A 2d (one plane) or 3d (cols x rows x planes) dataset.
+	 * @param template An image subheader for type 7 files or a scan subheader
+	 *   for type 11 files.
+	 * @throws IOException
+	 */
+	public void writeFrame(Allocatable type, DimensionedDataSource frame, EcatSubheader template)
+		throws IOException
+	{
+		if (template == null)
+			throw new IllegalArgumentException("template cannot be null");
+		boolean fits = mainHeader.fileType == 7 ?
+				template instanceof EcatImageSubheader
+				:
+				template instanceof EcatScanSubheader;
+		if (!fits)
+			throw new IllegalArgumentException("a "+template.getClass().getSimpleName()+
+												" cannot describe a matrix of file type "+mainHeader.fileType);
+		write(type, frame, template.copy());
+	}
+
+	/**
+	 * Write the main header and the matrix directory and close the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		
+		if (closed)
+			return;
+		
+		closed = true;
+		
+		try {
+			
+			mainHeader.numPlanes = (short) numPlanes;
+			mainHeader.numFrames = (short) numFrames;
+			mainHeader.numGates = 1;
+			mainHeader.numBedPositions = 0;
+			
+			ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+			mainHeader.write(buf);
+			buf.clear();
+			writeFully(buf, 0);
+			
+			// the last node links back to the first one to close the chain
+			
+			for (int i = 0; i < nodes.size(); i++) {
+				int[] node = nodes.get(i);
+				node[1] = i + 1 < nodes.size() ? nodeBlocks.get(i + 1) : EcatDirectory.FIRST_NODE_BLOCK;
+				buf = ByteBuffer.allocate(BLOCK_SIZE).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+				buf.asIntBuffer().put(node);
+				writeFully(buf, offset(nodeBlocks.get(i)));
+			}
+			
+		} finally {
+			
+			channel.close();
+		}
+	}
+	
+	private void write(Allocatable type, DimensionedDataSource frame, EcatSubheader sh) throws IOException {
+		
+		if (closed)
+			throw new IllegalStateException("writer is closed");
+		if (type == null)
+			throw new IllegalArgumentException("type cannot be null");
+		if (frame == null)
+			throw new IllegalArgumentException("frame cannot be null");
+		if (frame.numDimensions() != 2 && frame.numDimensions() != 3)
+			throw new IllegalArgumentException("frames must be 2d or 3d");
+		if (numFrames == MAX_FRAMES)
+			throw new IllegalArgumentException("an ecat file can hold at most "+MAX_FRAMES+" frames");
+		
+		long cols = frame.dimension(0);
+		long rows = frame.dimension(1);
+		long planes = frame.numDimensions() == 3 ? frame.dimension(2) : 1;
+		
+		if (cols > Short.MAX_VALUE || rows > Short.MAX_VALUE || planes > Short.MAX_VALUE)
+			throw new IllegalArgumentException("frame dimensions do not fit in an ecat subheader");
+		
+		// the main header records a single plane count for the whole file
+		
+		if (numFrames > 0 && planes != numPlanes)
+			throw new IllegalArgumentException("every frame must have "+numPlanes+" planes");
+		
+		short dataType = dataType(type);
+		
+		// a full directory node is followed by a new one
+		
+		int[] node = nodes.get(nodes.size() - 1);
+		if (node[3] == NODE_ENTRIES) {
+			int prev = nodeBlocks.get(nodeBlocks.size() - 1);
+			node = new int[EcatDirectory.NODE_INTS];
+			node[2] = prev;
+			nodes.add(node);
+			nodeBlocks.add(nextBlock++);
+		}
+		
+		long numBytes = cols * rows * planes * PixelDecoder.bytesPerPixel(dataType);
+		
+		int subheaderBlock = nextBlock;
+		int dataBlock = subheaderBlock + sh.numBlocks();
+		int lastBlock = (int) (dataBlock + (numBytes + BLOCK_SIZE - 1) / BLOCK_SIZE - 1);
+		
+		double[] range = new double[2];
+		
+		writePixels(type, frame.rawData(), offset(dataBlock), range);
+		
+		// describe the pixels that were just written
+		
+		boolean isFloat = dataType == 5;
+		
+		// the header min and max are shorts. they are only recorded for 8 and
+		//   16 bit pixels whose range fits in a short. otherwise they are 0 and
+		//   readers fall back to the range of the data type.
+		
+		boolean fits = PixelDecoder.bytesPerPixel(dataType) <= 2 &&
+						range[0] >= Short.MIN_VALUE && range[1] <= Short.MAX_VALUE;
+		short min = fits ? (short) range[0] : 0;
+		short max = fits ? (short) range[1] : 0;
+		
+		sh.dataType = dataType;
+		sh.numDimensions = 3;
+		sh.dims = new long[] {cols, rows, planes};
+		sh.scaleFactor = isFloat || sh.scaleFactor == 0 ? 1 : sh.scaleFactor;
+		sh.signedDataFlag = signed(type);
+		
+		if (sh instanceof EcatImageSubheader) {
+			EcatImageSubheader ih = (EcatImageSubheader) sh;
+			ih.xDimension = (short) cols;
+			ih.yDimension = (short) rows;
+			ih.zDimension = (short) planes;
+			ih.imageMin = min;
+			ih.imageMax = max;
+		}
+		else {
+			EcatScanSubheader sc = (EcatScanSubheader) sh;
+			sc.numRElements = (short) cols;
+			sc.numAngles = (short) rows;
+			sc.numZElements = (short) planes;
+			sc.scanMin = min;
+			sc.scanMax = max;
+		}
+		
+		ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE * sh.numBlocks());
+		sh.writeFields(buf, bigEndian);
+		buf.clear();
+		writeFully(buf, offset(subheaderBlock));
+		
+		int entry = 4 + 4 * node[3];
+		node[entry] = EcatDirectory.matrixNumber(numFrames + 1, 1, 1, 0, 0);
+		node[entry + 1] = subheaderBlock;
+		node[entry + 2] = lastBlock;
+		node[entry + 3] = 1;
+		node[3]++;
+		node[0] = NODE_ENTRIES - node[3];
+		
+		nextBlock = lastBlock + 1;
+		numPlanes = (int) planes;
+		numFrames++;
+	}
+
+	// encode the pixels in the order of the file and write them starting at byte
+	//   offset pos. the pixels are copied a buffer full at a time into an array
+	//   that is then put into the buffer in bulk. the last block is zero padded.
+	//   range receives the smallest and largest values.
+	
+	private void writePixels(Allocatable type, IndexedDataSource data, long pos, double[] range)
+		throws IOException
+	{
+		ByteBuffer buf = pixels;
+		
+		// ieee floats are written like the reader expects them: big endian with
+		//   the bytes of each 16-bit word swapped in little endian files
+		
+		boolean isFloat = type instanceof Float32Member || type instanceof Float64Member;
+		buf.order(bigEndian || isFloat ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		
+		int bytesPerPixel = PixelDecoder.bytesPerPixel(dataType(type));
+		int chunk = BUFFER_SIZE / bytesPerPixel;
+		
+		long n = data.size();
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		
+		for (long start = 0; start < n; start += chunk) {
+			
+			int count = (int) Math.min(chunk, n - start);
+			
+			buf.clear();
+			
+			if (type instanceof UnsignedInt8Member) {
+				UnsignedInt8Member val = new UnsignedInt8Member();
+				byte[] values = bytes(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					int v = val.v();
+					values[i] = (byte) v;
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.put(values, 0, count);
+			}
+			else if (type instanceof SignedInt8Member) {
+				SignedInt8Member val = new SignedInt8Member();
+				byte[] values = bytes(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					byte v = val.v();
+					values[i] = v;
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.put(values, 0, count);
+			}
+			else if (type instanceof UnsignedInt16Member) {
+				UnsignedInt16Member val = new UnsignedInt16Member();
+				short[] values = shorts(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					int v = val.v();
+					values[i] = (short) v;
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.asShortBuffer().put(values, 0, count);
+			}
+			else if (type instanceof SignedInt16Member) {
+				SignedInt16Member val = new SignedInt16Member();
+				short[] values = shorts(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					short v = val.v();
+					values[i] = v;
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.asShortBuffer().put(values, 0, count);
+			}
+			else if (type instanceof UnsignedInt32Member) {
+				UnsignedInt32Member val = new UnsignedInt32Member();
+				int[] values = ints(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					long v = val.v();
+					values[i] = (int) v;
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.asIntBuffer().put(values, 0, count);
+			}
+			else if (type instanceof SignedInt32Member) {
+				SignedInt32Member val = new SignedInt32Member();
+				int[] values = ints(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					int v = val.v();
+					values[i] = v;
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.asIntBuffer().put(values, 0, count);
+			}
+			else if (type instanceof Float32Member) {
+				Float32Member val = new Float32Member();
+				int[] values = ints(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					float v = val.v();
+					values[i] = floatBits(v);
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.asIntBuffer().put(values, 0, count);
+			}
+			else {
+				
+				// ecat has no 64 bit pixels: float64 values are narrowed to float32
+				
+				Float64Member val = new Float64Member();
+				int[] values = ints(count);
+				for (int i = 0; i < count; i++) {
+					data.get(start + i, val);
+					float v = (float) val.v();
+					values[i] = floatBits(v);
+					if (v < min) min = v;
+					if (v > max) max = v;
+				}
+				buf.asIntBuffer().put(values, 0, count);
+			}
+			
+			buf.position(count * bytesPerPixel);
+			
+			// the buffer is a whole number of blocks so the padding always fits
+			
+			while (buf.position() % BLOCK_SIZE != 0) {
+				buf.put((byte) 0);
+			}
+			
+			pos = flush(buf, pos);
+		}
+		
+		range[0] = n == 0 ? 0 : min;
+		range[1] = n == 0 ? 0 : max;
+	}
+	
+	private byte[] bytes(int count) {
+		if (bytes == null || bytes.length < count)
+			bytes = new byte[count];
+		return bytes;
+	}
+	
+	private short[] shorts(int count) {
+		if (shorts == null || shorts.length < count)
+			shorts = new short[count];
+		return shorts;
+	}
+	
+	private int[] ints(int count) {
+		if (ints == null || ints.length < count)
+			ints = new int[count];
+		return ints;
+	}
+	
+	private int floatBits(float v) {
+		int bits = Float.floatToRawIntBits(v);
+		if (!bigEndian)
+			bits = ((bits & 0x00ff00ff) << 8) | ((bits >>> 8) & 0x00ff00ff);
+		return bits;
+	}
+	
+	private long flush(ByteBuffer buf, long pos) throws IOException {
+		buf.flip();
+		pos = writeFully(buf, pos);
+		buf.clear();
+		return pos;
+	}
+	
+	private long writeFully(ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+		return pos;
+	}
+	
+	// the ecat data type code of a zorbage type
+	
+	private short dataType(Allocatable type) {
+		if (type instanceof UnsignedInt8Member || type instanceof SignedInt8Member)
+			return 1;
+		if (type instanceof UnsignedInt16Member || type instanceof SignedInt16Member)
+			return (short) (bigEndian ? 6 : 2);
+		if (type instanceof UnsignedInt32Member || type instanceof SignedInt32Member)
+			return (short) (bigEndian ? 7 : 3);
+		if (type instanceof Float32Member || type instanceof Float64Member)
+			return 5;
+		throw new IllegalArgumentException("Unknown data type: "+type.getClass().getName());
+	}
+	
+	// ecat has no unsigned types. the subheader of a signed frame is marked
+	//   signed so that the reader picks the signed type back.
+	
+	private static boolean signed(Allocatable type) {
+		return type instanceof SignedInt8Member ||
+				type instanceof SignedInt16Member ||
+				type instanceof SignedInt32Member;
+	}
+	
+	private static long offset(int block) {
+		return 1L * BLOCK_SIZE * (block - 1);
+	}
+	
+	private static EcatMainHeader defaultMainHeader() {
+		EcatMainHeader h = new EcatMainHeader();
+		h.magicNumber = "MATRIX72v";
+		h.swVersion = 72;
+		h.bedPositions = new float[16];
+		return h;
+	}
+	
+	private EcatSubheader defaultSubheader() {
+		if (mainHeader.fileType == 7) {
+			EcatImageSubheader sh = new EcatImageSubheader();
+			sh.xPixelSize = 1;
+			sh.yPixelSize = 1;
+			sh.zPixelSize = 1;
+			return sh;
+		}
+		else {
+			EcatScanSubheader sh = new EcatScanSubheader();
+			sh.xResolution = 1;
+			sh.yResolution = 1;
+			sh.zResolution = 1;
+			sh.corSingles = new float[16];
+			sh.uncorSingles = new float[16];
+			sh.physicalPlanes = new int[8];
+			return sh;
+		}
+	}
+}
@@ -0,0 +1,658 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An ecat input that decompresses a gzipped file on the fly. Data is inflated
+ * in a single forward pass. Seeking forward inflates and discards the bytes
+ * in between.
+ * <p>
+ * Inflation can only restart at the beginning of a gzip member so the input
+ * records a checkpoint (compressed offset, uncompressed offset) at each member
+ * it passes. A backward seek (or a long forward one) restarts at the nearest
+ * checkpoint at or before the target. A plain gzip file is a single member so
+ * going backwards restarts from the beginning. Block compressed files (made by
+ * bgzip) are made of many small members and can be read in any order almost as
+ * cheaply as in file order.
+ * <p>
+ * The checkpoints can be kept in a sidecar index (named like the file plus
+ * ".gzi", in the format bgzip uses) so later opens can seek anywhere at once.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+class GzipEcatInput extends EcatInput {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final long fileSize;
+	private final Inflater inflater = new Inflater(true);
+	private final CRC32 crc = new CRC32();
+
+	// checkpoints as {compressed offset, uncompressed offset} sorted by offset
+
+	private final List<long[]> checkpoints = new ArrayList<>();
+
+	// unconsumed compressed bytes live in cbuf[cOff, cOff + cLen). cPos is the
+	//   file offset of cbuf[cOff].
+
+	private final byte[] cbuf = new byte[BUFFER_SIZE];
+	private int cOff;
+	private int cLen;
+	private long cPos;
+
+	// inflated bytes live in out[0, outLen). outStart is the uncompressed
+	//   offset of out[0] and out[outPos] is the next byte to read.
+
+	private final byte[] out = new byte[BUFFER_SIZE];
+	private int outPos;
+	private int outLen;
+	private long outStart;
+
+	private long memberStart;
+	private boolean atEnd;
+	private long bytesInflated;
+
+	private GzipEcatInput(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		this.fileSize = raf.length();
+		checkpoints.add(new long[] {0, 0});
+		restart(checkpoints.get(0));
+	}
+
+	/**
+	 * Open a gzipped file.
+	 * 
+	 * @param file
+	 * @param useIndex True to load the checkpoints from the sidecar index. If
+	 *          there is no up to date index the file is scanned for them and
+	 *          a new index is written.
+	 * @return
+	 * @throws IOException
+	 */
+	static GzipEcatInput open(File file, boolean useIndex) throws IOException {
+
+		GzipEcatInput in = new GzipEcatInput(file);
+
+		try {
+
+			if (useIndex && !in.loadIndex()) {
+
+				in.scan();
+
+				in.writeIndex();
+			}
+
+			return in;
+
+		} catch (IOException | RuntimeException e) {
+
+			in.close();
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns true if the bytes start with the gzip magic number.
+	 * 
+	 * @param b
+	 * @param len
+	 * @return
+	 */
+	static boolean isGzip(byte[] b, int len) {
+		return len >= 2 && (b[0] & 0xff) == 0x1f && (b[1] & 0xff) == 0x8b;
+	}
+
+	/**
+	 * Returns true if the bytes start with the zstandard magic number.
+	 * 
+	 * @param b
+	 * @param len
+	 * @return
+	 */
+	static boolean isZstd(byte[] b, int len) {
+		return len >= 4 && (b[0] & 0xff) == 0x28 && (b[1] & 0xff) == 0xb5 &&
+				(b[2] & 0xff) == 0x2f && (b[3] & 0xff) == 0xfd;
+	}
+
+	/**
+	 * Returns the sidecar index file of a gzipped file.
+	 * 
+	 * @param file
+	 * @return
+	 */
+	static File sidecar(File file) {
+		return new File(file.getPath() + ".gzi");
+	}
+
+	@Override
+	byte readByte() throws IOException {
+		if (outPos == outLen && !fill())
+			throw new EOFException();
+		return out[outPos++];
+	}
+
+	@Override
+	short readShort() throws IOException {
+		if (outLen - outPos >= 2) {
+			short v = (short) (((out[outPos] & 0xff) << 8) | (out[outPos+1] & 0xff));
+			outPos += 2;
+			return v;
+		}
+		return (short) (((readByte() & 0xff) << 8) | (readByte() & 0xff));
+	}
+
+	@Override
+	int readInt() throws IOException {
+		if (outLen - outPos >= 4) {
+			int v = ((out[outPos] & 0xff) << 24) | ((out[outPos+1] & 0xff) << 16) |
+					((out[outPos+2] & 0xff) << 8) | (out[outPos+3] & 0xff);
+			outPos += 4;
+			return v;
+		}
+		return ((readByte() & 0xff) << 24) | ((readByte() & 0xff) << 16) |
+				((readByte() & 0xff) << 8) | (readByte() & 0xff);
+	}
+
+	@Override
+	void readFully(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (outPos == outLen && !fill())
+				throw new EOFException();
+			int n = Math.min(len, outLen - outPos);
+			System.arraycopy(out, outPos, b, off, n);
+			outPos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	long position() {
+		return outStart + outPos;
+	}
+
+	@Override
+	void skip(long numBytes) throws IOException {
+		seek(position() + numBytes);
+	}
+
+	@Override
+	void seek(long pos) throws IOException {
+
+		if (pos < 0)
+			throw new EOFException("seek position "+pos+" is before the start of the data");
+
+		// already inflated
+
+		if (pos >= outStart && pos <= outStart + outLen) {
+			outPos = (int) (pos - outStart);
+			return;
+		}
+
+		// restart at the nearest checkpoint if going backwards or if one lies
+		//   between here and the target
+
+		long[] best = checkpoint(pos);
+
+		if (pos < position() || best[1] > position())
+			restart(best);
+
+		while (outStart + outLen < pos) {
+			if (!fill())
+				throw new EOFException("seek position "+pos+" is past the end of the data");
+		}
+
+		outPos = (int) (pos - outStart);
+	}
+
+	@Override
+	boolean isRandomAccess() {
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		raf.close();
+	}
+
+	// the checkpoints known so far as {compressed offset, uncompressed offset}
+
+	long[][] checkpoints() {
+		long[][] copy = new long[checkpoints.size()][];
+		for (int i = 0; i < copy.length; i++)
+			copy[i] = checkpoints.get(i).clone();
+		return copy;
+	}
+
+	// the number of bytes inflated so far
+
+	long bytesInflated() {
+		return bytesInflated;
+	}
+
+	// inflate the next run of bytes into the output buffer. returns false at the
+	//   end of the data.
+
+	private boolean fill() throws IOException {
+
+		outStart += outLen;
+		outPos = 0;
+		outLen = 0;
+
+		while (outLen == 0) {
+
+			if (atEnd)
+				return false;
+
+			if (inflater.finished()) {
+				endMember();
+				continue;
+			}
+
+			if (inflater.needsInput()) {
+				refill();
+				if (cLen == 0)
+					throw new EOFException("gzip data of "+file+" is truncated");
+				inflater.setInput(cbuf, cOff, cLen);
+			}
+
+			int n;
+			try {
+				n = inflater.inflate(out, 0, out.length);
+			} catch (DataFormatException e) {
+				throw new ZipException("bad gzip data in "+file+": "+e.getMessage());
+			}
+
+			if (n == 0 && inflater.needsDictionary())
+				throw new ZipException("bad gzip data in "+file+": a dictionary is needed");
+
+			consumed(cLen - inflater.getRemaining());
+
+			crc.update(out, 0, n);
+
+			outLen = n;
+
+			bytesInflated += n;
+		}
+
+		return true;
+	}
+
+	// mark compressed bytes as used
+
+	private void consumed(int n) {
+		cOff += n;
+		cLen -= n;
+		cPos += n;
+	}
+
+	// make sure some compressed bytes are buffered unless at the end of the file
+
+	private void refill() throws IOException {
+		if (cLen > 0)
+			return;
+		raf.seek(cPos);
+		int n = raf.read(cbuf, 0, cbuf.length);
+		cOff = 0;
+		cLen = Math.max(0, n);
+	}
+
+	private int nextCompressedByte() throws IOException {
+		refill();
+		if (cLen == 0)
+			throw new EOFException("gzip data of "+file+" is truncated");
+		int b = cbuf[cOff] & 0xff;
+		consumed(1);
+		return b;
+	}
+
+	// the last checkpoint at or before an uncompressed offset
+
+	private long[] checkpoint(long pos) {
+		long[] best = checkpoints.get(0);
+		for (long[] c : checkpoints) {
+			if (c[1] <= pos)
+				best = c;
+			else
+				break;
+		}
+		return best;
+	}
+
+	// start inflating at a checkpoint. a checkpoint that is not at the start of a
+	//   member came from an index that no longer matches the file (its time stamp
+	//   alone cannot tell). then the members are found again and the index is
+	//   rewritten.
+
+	private void restart(long[] checkpoint) throws IOException {
+		if (checkpoint[0] != 0 && !isMemberStart(checkpoint[0])) {
+			resetCheckpoints();
+			scan();
+			if (sidecar(file).isFile())
+				writeIndex();
+			checkpoint = checkpoint(checkpoint[1]);
+		}
+		cPos = checkpoint[0];
+		cOff = 0;
+		cLen = 0;
+		outStart = checkpoint[1];
+		outPos = 0;
+		outLen = 0;
+		atEnd = false;
+		startMember();
+	}
+
+	// read a member header and get ready to inflate its data
+
+	private void startMember() throws IOException {
+
+		memberStart = outStart + outLen;
+
+		readHeader();
+
+		inflater.reset();
+		crc.reset();
+	}
+
+	// check the trailer of the member just inflated and move on to the next one
+
+	private void endMember() throws IOException {
+
+		// the input the inflater did not use is still buffered and starts with the trailer
+
+		long crcValue = readLittleInt();
+		long size = readLittleInt();
+
+		long memberSize = outStart + outLen - memberStart;
+
+		if (crcValue != crc.getValue() || size != (memberSize & 0xffffffffL))
+			throw new ZipException("gzip data of "+file+" is corrupt (checksum mismatch)");
+
+		// like GZIPInputStream anything after the last member that is not a
+		//   member itself is ignored
+
+		if (!atMember()) {
+			atEnd = true;
+			return;
+		}
+
+		long[] checkpoint = new long[] {cPos, outStart + outLen};
+
+		if (checkpoint[1] > checkpoints.get(checkpoints.size() - 1)[1])
+			checkpoints.add(checkpoint);
+
+		startMember();
+	}
+
+	// true if the gzip magic number is at the given compressed position
+
+	private boolean isMemberStart(long comp) throws IOException {
+		if (comp + 2 > fileSize)
+			return false;
+		byte[] magic = new byte[2];
+		raf.seek(comp);
+		raf.readFully(magic);
+		return isGzip(magic, 2);
+	}
+
+	// true if another gzip member starts at the current compressed position
+
+	private boolean atMember() throws IOException {
+		if (cPos + 2 > fileSize)
+			return false;
+		refill();
+		if (cLen < 2) {
+			byte[] magic = new byte[2];
+			raf.seek(cPos);
+			raf.readFully(magic);
+			return isGzip(magic, 2);
+		}
+		return isGzip(new byte[] {cbuf[cOff], cbuf[cOff+1]}, 2);
+	}
+
+	private long readLittleInt() throws IOException {
+		long v = 0;
+		for (int i = 0; i < 4; i++)
+			v |= ((long) nextCompressedByte()) << (8 * i);
+		return v;
+	}
+
+	// parse a member header (RFC 1952) leaving the compressed position at its data.
+	//   returns the total size of the member if the header records it (bgzip
+	//   blocks do in a "BC" extra field) or -1 if it does not.
+
+	private long readHeader() throws IOException {
+
+		if (nextCompressedByte() != 0x1f || nextCompressedByte() != 0x8b)
+			throw new ZipException(file+" is not in gzip format");
+
+		if (nextCompressedByte() != 8)
+			throw new ZipException(file+" uses an unsupported gzip compression method");
+
+		int flags = nextCompressedByte();
+
+		for (int i = 0; i < 6; i++)
+			nextCompressedByte();  // mtime, xfl, os
+
+		long blockSize = -1;
+
+		if ((flags & 4) != 0) {  // FEXTRA
+			int xlen = nextCompressedByte() | (nextCompressedByte() << 8);
+			while (xlen >= 4) {
+				int si1 = nextCompressedByte();
+				int si2 = nextCompressedByte();
+				int len = nextCompressedByte() | (nextCompressedByte() << 8);
+				xlen -= 4;
+				if (si1 == 'B' && si2 == 'C' && len == 2 && xlen >= 2) {
+					blockSize = (nextCompressedByte() | (nextCompressedByte() << 8)) + 1;
+					xlen -= 2;
+				}
+				else {
+					for (int i = 0; i < len && xlen > 0; i++, xlen--)
+						nextCompressedByte();
+				}
+			}
+			while (xlen-- > 0)
+				nextCompressedByte();
+		}
+
+		if ((flags & 8) != 0) {  // FNAME
+			while (nextCompressedByte() != 0) { }
+		}
+
+		if ((flags & 16) != 0) {  // FCOMMENT
+			while (nextCompressedByte() != 0) { }
+		}
+
+		if ((flags & 2) != 0) {  // FHCRC
+			nextCompressedByte();
+			nextCompressedByte();
+		}
+
+		return blockSize;
+	}
+
+	// find the checkpoints of every member. members that record their size
+	//   (bgzip blocks) are found by reading just their headers and trailers.
+	//   others have to be inflated to find where they end.
+
+	private void scan() throws IOException {
+
+		long[] last = checkpoints.get(checkpoints.size() - 1);
+
+		long comp = last[0];
+		long unc = last[1];
+
+		while (comp < fileSize) {
+
+			cPos = comp;
+			cOff = 0;
+			cLen = 0;
+
+			long blockSize = readHeader();
+
+			if (blockSize < 0) {
+
+				// inflate the rest of the file. fill() records the checkpoints.
+
+				restart(new long[] {comp, unc});
+
+				while (fill()) { }
+
+				break;
+			}
+
+			long end = comp + blockSize;
+
+			if (end > fileSize)
+				throw new EOFException("gzip data of "+file+" is truncated");
+
+			raf.seek(end - 4);
+			byte[] isize = new byte[4];
+			raf.readFully(isize);
+
+			unc += (isize[0] & 0xffL) | ((isize[1] & 0xffL) << 8) | ((isize[2] & 0xffL) << 16) | ((isize[3] & 0xffL) << 24);
+			comp = end;
+
+			cPos = comp;
+			cOff = 0;
+			cLen = 0;
+
+			if (!atMember())
+				break;
+
+			if (unc > checkpoints.get(checkpoints.size() - 1)[1])
+				checkpoints.add(new long[] {comp, unc});
+		}
+
+		restart(checkpoints.get(0));
+	}
+
+	// read the checkpoints from the sidecar index. an index older than the
+	//   file is ignored. if the index cannot be used no checkpoints are kept
+	//   from it.
+
+	private boolean loadIndex() throws IOException {
+
+		if (readIndex())
+			return true;
+
+		resetCheckpoints();
+
+		return false;
+	}
+
+	private boolean readIndex() throws IOException {
+
+		File index = sidecar(file);
+
+		if (!index.isFile() || index.lastModified() < file.lastModified())
+			return false;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+
+			long count = Long.reverseBytes(in.readLong());
+
+			if (count < 0 || count > index.length() / 16)
+				return false;
+
+			for (long i = 0; i < count; i++) {
+				long comp = Long.reverseBytes(in.readLong());
+				long unc = Long.reverseBytes(in.readLong());
+				long[] prev = checkpoints.get(checkpoints.size() - 1);
+				if (comp <= prev[0] || unc < prev[1] || comp >= fileSize)
+					return false;
+				if (unc > prev[1])
+					checkpoints.add(new long[] {comp, unc});
+			}
+
+			return true;
+
+		} catch (EOFException e) {
+
+			return false;
+		}
+	}
+
+	private void resetCheckpoints() {
+		checkpoints.clear();
+		checkpoints.add(new long[] {0, 0});
+	}
+
+	// write the checkpoints (but the first one at 0,0) as a bgzip style index:
+	//   a little endian count then pairs of little endian offsets. failing to
+	//   write it is not an error.
+
+	private void writeIndex() {
+
+		File index = sidecar(file);
+
+		try {
+
+			File tmp = File.createTempFile(index.getName(), ".tmp", index.getAbsoluteFile().getParentFile());
+
+			try {
+
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+					out.writeLong(Long.reverseBytes(checkpoints.size() - 1));
+
+					for (int i = 1; i < checkpoints.size(); i++) {
+						out.writeLong(Long.reverseBytes(checkpoints.get(i)[0]));
+						out.writeLong(Long.reverseBytes(checkpoints.get(i)[1]));
+					}
+				}
+
+				Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			} finally {
+
+				tmp.delete();
+			}
+
+		} catch (IOException e) {
+
+			// ignore: the file is scanned again next time
+		}
+	}
+}
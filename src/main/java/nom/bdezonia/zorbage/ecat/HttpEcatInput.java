@@ -0,0 +1,356 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An ecat input that reads a remote file with HTTP range requests. Only the
+ * bytes that are asked for are downloaded: the headers, the directory and
+ * the frames that are decoded. The file is fetched in fixed size blocks that
+ * are kept in a small least recently used cache. A read that needs several
+ * missing blocks in a row fetches them with a single request along with some
+ * read ahead. The read ahead starts at one block and doubles (up to a limit)
+ * while the reads stay sequential, as they do while a frame is decoded.
+ * <p>
+ * If the file changes on the server while it is being read (its ETag,
+ * modification time or size changes) reads fail rather than mix old and new
+ * bytes. Only a strong ETag is used to tell: a weak one can stay the same
+ * when the bytes change, so then the modification time is used instead.
+ * 
+ * @author Barry DeZonia
+ *
+ */
+class HttpEcatInput extends EcatInput {
+
+	static final int BLOCK_SIZE = 1 << 16;
+
+	// the number of blocks fetched past the end of a read: at first and at most
+
+	private static final int READ_AHEAD = 1;
+
+	private static final int MAX_READ_AHEAD = 8;
+
+	// the number of blocks kept
+
+	private static final int CACHE_BLOCKS = 32;
+
+	private final URL url;
+	private final long length;
+	private final String etag;
+	private final String lastModified;
+	private final Map<Long, byte[]> blocks = new LinkedHashMap<>(CACHE_BLOCKS, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > CACHE_BLOCKS;
+		}
+	};
+	private final byte[] small = new byte[4];
+	private long pos;
+	private long bytesFetched;
+	private long nextBlock;
+	private int readAhead = READ_AHEAD;
+
+	private HttpEcatInput(URL url, long length, String etag, String lastModified) {
+		this.url = url;
+		this.length = length;
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Open a remote file for range reads. The first blocks of the file are
+	 * fetched right away.
+	 * 
+	 * @param url
+	 * @return The input or null if the server does not honor range requests.
+	 * @throws IOException
+	 */
+	static HttpEcatInput open(URL url) throws IOException {
+
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+
+		try {
+
+			long end = (1L + READ_AHEAD) * BLOCK_SIZE - 1;
+
+			conn.setRequestProperty("Range", "bytes=0-" + end);
+
+			int code = conn.getResponseCode();
+
+			if (code == HttpURLConnection.HTTP_NOT_FOUND)
+				throw new IOException("remote file not found: " + url);
+
+			if (code != HttpURLConnection.HTTP_PARTIAL)
+				return null;
+
+			long[] range = contentRange(conn);
+
+			if (range == null || range[0] != 0 || range[2] < 0)
+				return null;
+
+			HttpEcatInput in = new HttpEcatInput(url, range[2], strongETag(conn), conn.getHeaderField("Last-Modified"));
+
+			in.store(0, in.body(conn, range[1] + 1));
+
+			in.nextBlock = (range[1] + 1) / BLOCK_SIZE;
+
+			return in;
+
+		} finally {
+
+			conn.disconnect();
+		}
+	}
+
+	@Override
+	byte readByte() throws IOException {
+		readFully(small, 0, 1);
+		return small[0];
+	}
+
+	@Override
+	short readShort() throws IOException {
+		readFully(small, 0, 2);
+		return (short) (((small[0] & 0xff) << 8) | (small[1] & 0xff));
+	}
+
+	@Override
+	int readInt() throws IOException {
+		readFully(small, 0, 4);
+		return ((small[0] & 0xff) << 24) | ((small[1] & 0xff) << 16) | ((small[2] & 0xff) << 8) | (small[3] & 0xff);
+	}
+
+	@Override
+	void readFully(byte[] b, int off, int len) throws IOException {
+
+		if (pos + len > length)
+			throw new EOFException("read of "+len+" bytes at "+pos+" is past the end of the data (size "+length+")");
+
+		while (len > 0) {
+
+			long blockNum = pos / BLOCK_SIZE;
+
+			// a cached block or else the run of blocks fetched from this one on
+
+			byte[] bytes = blocks.get(blockNum);
+
+			if (bytes == null)
+				bytes = fetch(blockNum, (pos + len - 1) / BLOCK_SIZE);
+
+			int from = (int) (pos - blockNum * BLOCK_SIZE);
+			int n = Math.min(len, bytes.length - from);
+			System.arraycopy(bytes, from, b, off, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	long position() {
+		return pos;
+	}
+
+	@Override
+	void skip(long numBytes) throws IOException {
+		seek(pos + numBytes);
+	}
+
+	@Override
+	void seek(long pos) throws IOException {
+		if (pos < 0 || pos > length)
+			throw new EOFException("seek position "+pos+" is outside of the data (size "+length+")");
+		this.pos = pos;
+	}
+
+	@Override
+	boolean isRandomAccess() {
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		blocks.clear();
+	}
+
+	// the size of the remote file
+
+	long length() {
+		return length;
+	}
+
+	// the number of bytes downloaded so far
+
+	long bytesFetched() {
+		return bytesFetched;
+	}
+
+	// fetch the missing block first along with the missing blocks that follow it
+	//   up to block last (plus read ahead) in a single request. the run stops
+	//   early at a block that is already cached. returns the bytes of the run.
+
+	private byte[] fetch(long first, long last) throws IOException {
+
+		// grow the read ahead while the reads are sequential
+
+		readAhead = (first == nextBlock) ? Math.min(MAX_READ_AHEAD, 2 * readAhead) : READ_AHEAD;
+
+		long lastBlock = (length - 1) / BLOCK_SIZE;
+
+		last = Math.min(lastBlock, last + readAhead);
+
+		long runEnd = first;
+		while (runEnd < last && !blocks.containsKey(runEnd + 1))
+			runEnd++;
+
+		long start = first * BLOCK_SIZE;
+		long end = Math.min(length, (runEnd + 1) * BLOCK_SIZE) - 1;
+
+		byte[] bytes = request(start, end);
+
+		store(start, bytes);
+
+		nextBlock = runEnd + 1;
+
+		return bytes;
+	}
+
+	// cache the bytes of whole blocks starting at a block boundary. only the last
+	//   blocks of a run that is larger than the cache are kept.
+
+	private void store(long start, byte[] bytes) {
+		int numBlocks = (bytes.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int skip = Math.max(0, numBlocks - CACHE_BLOCKS);
+		for (int off = skip * BLOCK_SIZE; off < bytes.length; off += BLOCK_SIZE) {
+			int n = Math.min(BLOCK_SIZE, bytes.length - off);
+			byte[] block = new byte[n];
+			System.arraycopy(bytes, off, block, 0, n);
+			blocks.put((start + off) / BLOCK_SIZE, block);
+		}
+	}
+
+	private byte[] request(long start, long end) throws IOException {
+
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+
+		try {
+
+			conn.setRequestProperty("Range", "bytes=" + start + "-" + end);
+
+			// If-Range needs a strong validator
+
+			if (etag != null)
+				conn.setRequestProperty("If-Range", etag);
+			else if (lastModified != null)
+				conn.setRequestProperty("If-Range", lastModified);
+
+			int code = conn.getResponseCode();
+
+			// with If-Range a server answers a changed file with the whole new file
+
+			if (code == HttpURLConnection.HTTP_OK)
+				throw new IOException("remote file changed while it was being read: " + url);
+
+			if (code != HttpURLConnection.HTTP_PARTIAL)
+				throw new IOException("range request failed with HTTP status " + code + ": " + url);
+
+			// a server may also ignore If-Range and send part of the new file
+
+			if (changed(conn))
+				throw new IOException("remote file changed while it was being read: " + url);
+
+			long[] range = contentRange(conn);
+
+			if (range == null || range[0] != start || range[1] != end)
+				throw new IOException("server sent the wrong range for bytes " + start + "-" + end + ": " + url);
+
+			if (range[2] >= 0 && range[2] != length)
+				throw new IOException("remote file changed while it was being read: " + url);
+
+			return body(conn, end - start + 1);
+
+		} finally {
+
+			conn.disconnect();
+		}
+	}
+
+	private byte[] body(HttpURLConnection conn, long len) throws IOException {
+		try (InputStream in = conn.getInputStream()) {
+			byte[] bytes = in.readNBytes((int) len);
+			if (bytes.length != len)
+				throw new EOFException("server sent "+bytes.length+" of "+len+" bytes: " + url);
+			bytesFetched += len;
+			return bytes;
+		}
+	}
+
+	// true if the validators of a response differ from the ones seen when the
+	//   file was opened. a validator the response leaves out is not compared.
+
+	private boolean changed(HttpURLConnection conn) {
+		if (etag != null) {
+			String value = conn.getHeaderField("ETag");
+			return value != null && !value.equals(etag);
+		}
+		if (lastModified != null) {
+			String value = conn.getHeaderField("Last-Modified");
+			return value != null && !value.equals(lastModified);
+		}
+		return false;
+	}
+
+	// the ETag of a response or null if there is none or it is weak
+
+	private static String strongETag(HttpURLConnection conn) {
+		String value = conn.getHeaderField("ETag");
+		if (value == null || value.startsWith("W/"))
+			return null;
+		return value;
+	}
+
+	// parse "Content-Range: bytes first-last/total" into {first, last, total}.
+	//   total is -1 if the server does not know it.
+
+	private static long[] contentRange(HttpURLConnection conn) {
+		String value = conn.getHeaderField("Content-Range");
+		if (value == null || !value.startsWith("bytes "))
+			return null;
+		try {
+			String spec = value.substring(6).trim();
+			int dash = spec.indexOf('-');
+			int slash = spec.indexOf('/');
+			long first = Long.parseLong(spec.substring(0, dash).trim());
+			long last = Long.parseLong(spec.substring(dash + 1, slash).trim());
+			String total = spec.substring(slash + 1).trim();
+			return new long[] {first, last, total.equals("*") ? -1 : Long.parseLong(total)};
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+}
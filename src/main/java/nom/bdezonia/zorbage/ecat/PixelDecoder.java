@@ -0,0 +1,452 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import nom.bdezonia.zorbage.algebra.Allocatable;
+import nom.bdezonia.zorbage.datasource.IndexedDataSource;
+import nom.bdezonia.zorbage.type.integer.int16.SignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int16.UnsignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int32.SignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int32.UnsignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int8.SignedInt8Member;
+import nom.bdezonia.zorbage.type.integer.int8.UnsignedInt8Member;
+import nom.bdezonia.zorbage.type.real.float32.Float32Member;
+import nom.bdezonia.zorbage.type.real.float64.Float64Member;
+
+/**
+ * Decodes runs of ecat pixels into zorbage storage. Pixels are read a block
+ * at a time into primitive arrays (byte swapped as needed) and then copied
+ * into the destination. The type dispatch happens once per block rather than
+ * once per pixel.
+ *
+ * @author Barry DeZonia
+ *
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+class PixelDecoder {
+
+	// the largest number of pixels decoded in one bulk read
+
+	static final int MAX_BLOCK = 1 << 20;
+
+	// each thread keeps one decoder so pool threads reuse their buffers
+	//   from one frame (and one file) to the next
+
+	private static final ThreadLocal<PixelDecoder> PER_THREAD = ThreadLocal.withInitial(PixelDecoder::new);
+
+	private byte[] bytes = new byte[0];
+	private short[] shorts = new short[0];
+	private int[] ints = new int[0];
+	private double[] doubles = new double[0];
+	private EcatStats.Accumulator stats = null;
+
+	/**
+	 * Returns the decoder that belongs to the calling thread. It must not be
+	 * handed to other threads.
+	 */
+	static PixelDecoder forThread() {
+		return PER_THREAD.get();
+	}
+
+	/**
+	 * Sets where the raw values of the pixels decoded from now on are tallied.
+	 *
+	 * @param stats The accumulator or null to stop gathering statistics.
+	 */
+	void collect(EcatStats.Accumulator stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Decode count pixels from the input into dest starting at index start.
+	 *
+	 * @param in The input positioned at the first pixel.
+	 * @param dataType The ecat data type code (1 - 7).
+	 * @param signed True if the integer pixels should be treated as signed.
+	 * @param blockSize The preferred number of pixels to decode at once (such as one plane).
+	 * @param dest The storage to fill. Its type must match value(dataType, signed).
+	 * @param start
+	 * @param count
+	 * @throws IOException
+	 */
+	void decode(EcatInput in, short dataType, boolean signed, long blockSize,
+					IndexedDataSource<Allocatable> dest, long start, long count)
+		throws IOException
+	{
+		int block = (int) Math.max(1, Math.min(MAX_BLOCK, Math.min(blockSize, count)));
+
+		IndexedDataSource storage = dest;
+
+		long done = 0;
+		while (done < count) {
+
+			int n = (int) Math.min(block, count - done);
+
+			long pos = start + done;
+
+			switch (dataType) {
+
+			case 1: // byte
+
+				readBytes(in, n);
+				if (stats != null)
+					stats.addBytes(bytes, n, signed);
+				if (signed) {
+					SignedInt8Member val = new SignedInt8Member();
+					for (int i = 0; i < n; i++) {
+						val.setV(bytes[i]);
+						storage.set(pos + i, val);
+					}
+				}
+				else {
+					UnsignedInt8Member val = new UnsignedInt8Member();
+					for (int i = 0; i < n; i++) {
+						val.setV(bytes[i]);
+						storage.set(pos + i, val);
+					}
+				}
+				break;
+
+			case 2: // short : VAX_I2 LITTLE
+			case 6: // short : SUN_I2 BIG
+
+				readShorts(in, n, in.order());
+				if (stats != null)
+					stats.addShorts(shorts, n, signed);
+				if (signed) {
+					SignedInt16Member val = new SignedInt16Member();
+					for (int i = 0; i < n; i++) {
+						val.setV(shorts[i]);
+						storage.set(pos + i, val);
+					}
+				}
+				else {
+					UnsignedInt16Member val = new UnsignedInt16Member();
+					for (int i = 0; i < n; i++) {
+						val.setV(shorts[i]);
+						storage.set(pos + i, val);
+					}
+				}
+				break;
+
+			case 3: // int : VAX_I4 LITTLE
+			case 7: // int : SUN_I4 big
+
+				readInts(in, n, in.order());
+				if (stats != null)
+					stats.addInts(ints, n, signed);
+				if (signed) {
+					SignedInt32Member val = new SignedInt32Member();
+					for (int i = 0; i < n; i++) {
+						val.setV(ints[i]);
+						storage.set(pos + i, val);
+					}
+				}
+				else {
+					UnsignedInt32Member val = new UnsignedInt32Member();
+					for (int i = 0; i < n; i++) {
+						val.setV(ints[i]);
+						storage.set(pos + i, val);
+					}
+				}
+				break;
+
+			case 4: // double : VAX_R4 LITTLE
+
+				readInts(in, n, ByteOrder.BIG_ENDIAN);
+				{
+					if (doubles.length < n)
+						doubles = new double[n];
+					vaxFloatBitsToDoubles(ints, doubles, n, !in.isBigEndian());
+					if (stats != null)
+						stats.addDoubles(doubles, n);
+					Float64Member val = new Float64Member();
+					for (int i = 0; i < n; i++) {
+						val.setV(doubles[i]);
+						storage.set(pos + i, val);
+					}
+				}
+				break;
+
+			case 5: // float : IEEE FLT
+
+				readInts(in, n, ByteOrder.BIG_ENDIAN);
+				{
+					// little endian floats are stored as byte swapped 16-bit words
+
+					boolean swapBytes = !in.isBigEndian();
+					Float32Member val = new Float32Member();
+					for (int i = 0; i < n; i++) {
+						int bits = ints[i];
+						if (swapBytes)
+							bits = ((bits & 0x00ff00ff) << 8) | ((bits >>> 8) & 0x00ff00ff);
+						val.setV(Float.intBitsToFloat(bits));
+						storage.set(pos + i, val);
+						if (stats != null)
+							stats.add(val.v());
+					}
+				}
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown data type! "+dataType);
+			}
+
+			done += n;
+		}
+	}
+
+	/**
+	 * Decode count pixels from the input into dest starting at index start,
+	 * multiplying each value by a scale factor along the way. The values are
+	 * computed with primitive double math and stored as float32 or float64.
+	 *
+	 * @param in The input positioned at the first pixel.
+	 * @param dataType The ecat data type code (1 - 7).
+	 * @param signed True if the integer pixels should be treated as signed.
+	 * @param blockSize The preferred number of pixels to decode at once (such as one plane).
+	 * @param scale The scale factor to apply.
+	 * @param type A Float32Member or Float64Member matching the type of dest.
+	 * @param dest The storage to fill.
+	 * @param start
+	 * @param count
+	 * @throws IOException
+	 */
+	void decodeScaled(EcatInput in, short dataType, boolean signed, long blockSize, double scale,
+						Allocatable type, IndexedDataSource<Allocatable> dest, long start, long count)
+		throws IOException
+	{
+		int block = (int) Math.max(1, Math.min(MAX_BLOCK, Math.min(blockSize, count)));
+
+		IndexedDataSource storage = dest;
+
+		long done = 0;
+		while (done < count) {
+
+			int n = (int) Math.min(block, count - done);
+
+			long pos = start + done;
+
+			readDoubles(in, dataType, signed, n);
+
+			if (stats != null)
+				stats.addDoubles(doubles, n);
+
+			if (type instanceof Float32Member) {
+				Float32Member val = (Float32Member) type;
+				for (int i = 0; i < n; i++) {
+					val.setV((float) (doubles[i] * scale));
+					storage.set(pos + i, val);
+				}
+			}
+			else {
+				Float64Member val = (Float64Member) type;
+				for (int i = 0; i < n; i++) {
+					val.setV(doubles[i] * scale);
+					storage.set(pos + i, val);
+				}
+			}
+
+			done += n;
+		}
+	}
+
+	/**
+	 * Decode n pixels from the input as primitive doubles into the internal
+	 * doubles array. Unsigned integer data is widened without sign extension.
+	 *
+	 * @param in
+	 * @param dataType
+	 * @param signed
+	 * @param n
+	 * @throws IOException
+	 */
+	void readDoubles(EcatInput in, short dataType, boolean signed, int n) throws IOException {
+
+		if (doubles.length < n)
+			doubles = new double[n];
+
+		switch (dataType) {
+
+		case 1: // byte
+
+			readBytes(in, n);
+			if (signed) {
+				for (int i = 0; i < n; i++)
+					doubles[i] = bytes[i];
+			}
+			else {
+				for (int i = 0; i < n; i++)
+					doubles[i] = bytes[i] & 0xff;
+			}
+			break;
+
+		case 2: // short : VAX_I2 LITTLE
+		case 6: // short : SUN_I2 BIG
+
+			readShorts(in, n, in.order());
+			if (signed) {
+				for (int i = 0; i < n; i++)
+					doubles[i] = shorts[i];
+			}
+			else {
+				for (int i = 0; i < n; i++)
+					doubles[i] = shorts[i] & 0xffff;
+			}
+			break;
+
+		case 3: // int : VAX_I4 LITTLE
+		case 7: // int : SUN_I4 big
+
+			readInts(in, n, in.order());
+			if (signed) {
+				for (int i = 0; i < n; i++)
+					doubles[i] = ints[i];
+			}
+			else {
+				for (int i = 0; i < n; i++)
+					doubles[i] = ints[i] & 0xffffffffL;
+			}
+			break;
+
+		case 4: // double : VAX_R4 LITTLE
+
+			readInts(in, n, ByteOrder.BIG_ENDIAN);
+			vaxFloatBitsToDoubles(ints, doubles, n, !in.isBigEndian());
+			break;
+
+		case 5: // float : IEEE FLT
+
+			readInts(in, n, ByteOrder.BIG_ENDIAN);
+			if (!in.isBigEndian()) {
+				for (int i = 0; i < n; i++) {
+					int bits = ints[i];
+					bits = ((bits & 0x00ff00ff) << 8) | ((bits >>> 8) & 0x00ff00ff);
+					doubles[i] = Float.intBitsToFloat(bits);
+				}
+			}
+			else {
+				for (int i = 0; i < n; i++)
+					doubles[i] = Float.intBitsToFloat(ints[i]);
+			}
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown data type! "+dataType);
+		}
+	}
+
+	/**
+	 * The values most recently decoded by readDoubles().
+	 */
+	double[] doubles() {
+		return doubles;
+	}
+
+	/**
+	 * The number of bytes one pixel of the given ecat data type occupies.
+	 *
+	 * @param dataType
+	 * @return
+	 */
+	static int bytesPerPixel(short dataType) {
+		switch (dataType) {
+		case 1:
+			return 1;
+		case 2:
+		case 6:
+			return 2;
+		case 3:
+		case 4:
+		case 5:
+		case 7:
+			return 4;
+		default:
+			throw new IllegalArgumentException("Unknown data type! "+dataType);
+		}
+	}
+
+	// VAX_SCALE[bits >>> 23] is the signed power of two that the sign and
+	//   exponent bits of a vax float stand for: +/- 2^(exponent - 129).
+
+	private static final double[] VAX_SCALE = new double[512];
+
+	static {
+		for (int exponent = 0; exponent < 256; exponent++) {
+			VAX_SCALE[exponent] = Math.scalb(1.0, exponent - 129);
+			VAX_SCALE[exponent + 256] = -VAX_SCALE[exponent];
+		}
+	}
+
+	// NOTE: to preserve the full accuracy of the vax float I am returning it as a double
+
+	static double vaxFloatBitsToDouble(int bits) {
+
+		// format outlined here
+		//   http://www.turkupetcentre.net/petanalysis/format_image_ecat.html
+		// what I don't have info on: infs/nans/subnormals
+
+		// value = (1 + mantissa / 2^23) * 2^(exponent - 129), negated when the
+		//   sign bit is set. The mantissa mask deliberately spans 24 bits as it
+		//   always has. Every step is exact so a table lookup and one multiply
+		//   give the same bits as computing the powers directly.
+
+		int mantissa = bits & ((1<<24) - 1);
+
+		return (1.0 + mantissa * 0x1p-23) * VAX_SCALE[bits >>> 23];
+	}
+
+	/**
+	 * Convert n vax float bit patterns to doubles. There are no branches in
+	 * the loop so the JIT is free to unroll and vectorize it.
+	 * 
+	 * @param src The raw bits as read big endian from the file.
+	 * @param dst
+	 * @param n
+	 * @param swapWords True for little endian files: the 16-bit words of each
+	 *          value are stored in the opposite order.
+	 */
+	static void vaxFloatBitsToDoubles(int[] src, double[] dst, int n, boolean swapWords) {
+		int rot = swapWords ? 16 : 0;
+		for (int i = 0; i < n; i++) {
+			int bits = Integer.rotateLeft(src[i], rot);
+			dst[i] = (1.0 + (bits & 0xffffff) * 0x1p-23) * VAX_SCALE[bits >>> 23];
+		}
+	}
+
+	private void readBytes(EcatInput in, int n) throws IOException {
+		if (bytes.length < n)
+			bytes = new byte[n];
+		in.readFully(bytes, 0, n);
+	}
+
+	private void readShorts(EcatInput in, int n, ByteOrder order) throws IOException {
+		if (shorts.length < n)
+			shorts = new short[n];
+		in.readShorts(shorts, 0, n, order);
+	}
+
+	private void readInts(EcatInput in, int n, ByteOrder order) throws IOException {
+		if (ints.length < n)
+			ints = new int[n];
+		in.readInts(ints, 0, n, order);
+	}
+}
@@ -0,0 +1,59 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+/**
+ * A reduction over the planes of several frames (see EcatFile.reducePlanes()).
+ * Each plane gets its own state which sees the plane's pixels from every
+ * frame before it is finished. Different planes can be reduced on different
+ * threads at the same time but a plane's state is only used by one thread.
+ *
+ * @author Barry DeZonia
+ *
+ * @param <S> The type of the state kept for a plane.
+ */
+interface PlaneReducer<S> {
+
+	/**
+	 * Make the state of a plane before any of its pixels are seen.
+	 * 
+	 * @param plane
+	 * @return
+	 */
+	S start(long plane);
+
+	/**
+	 * Take a run of pixels of a plane from one frame. Scale factors have
+	 * already been applied.
+	 * 
+	 * @param state
+	 * @param frame The position of the frame in the list being reduced.
+	 * @param offset The index within the plane of the first pixel.
+	 * @param values
+	 * @param count
+	 */
+	void add(S state, int frame, int offset, double[] values, int count);
+
+	/**
+	 * The plane has been seen in every frame.
+	 * 
+	 * @param plane
+	 * @param state
+	 */
+	void finish(long plane, S state);
+}
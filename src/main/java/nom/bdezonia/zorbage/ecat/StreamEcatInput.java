@@ -0,0 +1,170 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An ecat input that reads sequentially from an InputStream. Only forward
+ * movement is supported.
+ *
+ * @author Barry DeZonia
+ *
+ */
+class StreamEcatInput extends EcatInput {
+
+	private final PositionableInputStream c1;
+	private final DataInputStream data;
+
+	StreamEcatInput(InputStream in) {
+		c1 = new PositionableInputStream(new BufferedInputStream(in));
+		data = new DataInputStream(c1);
+	}
+
+	@Override
+	byte readByte() throws IOException {
+		return data.readByte();
+	}
+
+	@Override
+	short readShort() throws IOException {
+		return data.readShort();
+	}
+
+	@Override
+	int readInt() throws IOException {
+		return data.readInt();
+	}
+
+	@Override
+	void readFully(byte[] b, int off, int len) throws IOException {
+		data.readFully(b, off, len);
+	}
+
+	@Override
+	long position() {
+		return c1.pos;
+	}
+
+	@Override
+	void skip(long numBytes) throws IOException {
+		c1.goForwardTo(c1.pos + numBytes);
+	}
+
+	@Override
+	void seek(long pos) throws IOException {
+		c1.goForwardTo(pos);
+	}
+
+	@Override
+	public void close() throws IOException {
+		data.close();
+	}
+
+	private static class PositionableInputStream extends InputStream {
+
+		private InputStream in;
+		private long pos;
+
+		public PositionableInputStream(InputStream in) {
+
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int byt = in.read();
+			if (byt >= 0)
+				pos++;
+			return byt;
+		}
+
+		@Override
+		public int read(byte[] b) throws IOException {
+
+			int numBytesRead = in.read(b);
+			if (numBytesRead >= 0)
+				pos = pos + numBytesRead;
+			return numBytesRead;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			int numBytesRead = in.read(b, off, len);
+			if (numBytesRead >= 0)
+				pos = pos + numBytesRead;
+			return numBytesRead;
+		}
+
+		public void goForwardTo(long desiredPos) throws IOException {
+			long diff = desiredPos - pos;
+			if (diff < 0)
+				throw new IllegalArgumentException("not yet supporting backward seeks");
+			// skip() can stop short (at the end of a buffer or a network packet)
+			while (pos < desiredPos) {
+				long numSkipped = in.skip(desiredPos - pos);
+				if (numSkipped > 0)
+					pos = pos + numSkipped;
+				else if (read() < 0)
+					throw new EOFException("seek position "+desiredPos+" is past the end of the data");
+			}
+		}
+
+		@Override
+		public int available() throws IOException {
+			return in.available();
+		}
+
+		@Override
+		protected Object clone() throws CloneNotSupportedException {
+			throw new CloneNotSupportedException();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+		@Override
+		public synchronized void reset() throws IOException {
+			in.reset();
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(n);
+			pos = pos + skipped;
+			return skipped;
+		}
+
+	}
+}
@@ -0,0 +1,105 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+
+/**
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class TestEcat {
+
+	private File file;
+	private final List<Exception> errors = new ArrayList<>();
+	private final EcatOptions options = new EcatOptions();
+
+	@Before
+	public void makeFile() throws IOException {
+
+		file = File.createTempFile("TestEcat", ".v");
+
+		try (EcatWriter writer = new EcatWriter(file.getPath(), 7)) {
+			for (int i = 0; i < 2; i++)
+				writer.writeFrame(G.INT16.construct(),
+						DimensionedStorage.allocate(G.INT16.construct(), new long[] {64, 64, 4}));
+		}
+
+		options.setListener(new EcatListener() {
+			@Override
+			public void fileFailed(URI fileURI, Exception error) {
+				assertEquals(file.toURI(), fileURI);
+				errors.add(error);
+			}
+		});
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void readFileReportsNoErrors() {
+
+		Ecat.readAllDatasets(file.toURI(), options);
+
+		assertEquals(0, errors.size());
+	}
+
+	@Test
+	public void missingFileIsReportedToTheListener() {
+
+		file.delete();
+
+		Ecat.readAllDatasets(file.toURI(), options);
+
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof IOException);
+	}
+
+	@Test
+	public void truncatedFileIsReportedToTheListener() throws IOException {
+
+		// cut the second frame short
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 1000);
+		}
+
+		Ecat.readAllDatasets(file.toURI(), options);
+
+		assertEquals(1, errors.size());
+	}
+}
@@ -0,0 +1,156 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+import nom.bdezonia.zorbage.misc.DataBundle;
+
+/**
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class TestEcatBatch {
+
+	private static final int NUM_FILES = 12;
+
+	private File dir;
+	private List<URI> files;
+
+	// the outcome of each file: "loaded", "failed" or "cancelled"
+
+	private final Map<URI, String> outcomes = new ConcurrentHashMap<>();
+	private final List<URI> repeats = new ArrayList<>();
+
+	@Before
+	public void makeFiles() throws IOException {
+
+		dir = Files.createTempDirectory("TestEcatBatch").toFile();
+
+		for (int i = 0; i < NUM_FILES; i++) {
+			try (EcatWriter writer = new EcatWriter(new File(dir, "file" + i + ".v").getPath(), 7)) {
+				for (int f = 0; f < 4; f++)
+					writer.writeFrame(G.INT16.construct(),
+							DimensionedStorage.allocate(G.INT16.construct(), new long[] {32, 32, 8}));
+			}
+		}
+
+		files = EcatBatch.listFiles(dir);
+	}
+
+	@After
+	public void deleteFiles() {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void everyFileIsLoaded() throws InterruptedException {
+
+		EcatBatch batch = new EcatBatch();
+		batch.read(files, listener(null));
+
+		assertEquals(NUM_FILES, files.size());
+		assertEquals(NUM_FILES, outcomes.size());
+		for (String outcome : outcomes.values())
+			assertEquals("loaded", outcome);
+		assertEquals(0, repeats.size());
+	}
+
+	@Test
+	public void filesNotStartedWhenInterruptedAreCancelled() throws InterruptedException {
+
+		EcatBatch batch = new EcatBatch();
+		batch.setIoConcurrency(1);
+
+		try {
+
+			batch.read(files, listener(Thread.currentThread()));
+
+			fail("the batch was not interrupted");
+
+		} catch (InterruptedException e) {
+
+			// expected
+		}
+
+		// the file being read when the interrupt came reports on its own thread
+
+		for (int i = 0; i < 1000 && outcomes.size() < NUM_FILES; i++)
+			Thread.sleep(10);
+
+		assertEquals(NUM_FILES, outcomes.size());
+		assertEquals(0, repeats.size());
+
+		int cancelled = 0;
+		for (String outcome : outcomes.values()) {
+			if (outcome.equals("cancelled"))
+				cancelled++;
+		}
+		assertTrue(cancelled >= NUM_FILES - 2);
+	}
+
+	// a listener that records outcomes and interrupts a thread once the first
+	//   file is loaded
+
+	private EcatBatchListener listener(Thread interrupt) {
+
+		return new EcatBatchListener() {
+
+			@Override
+			public void loaded(URI fileURI, DataBundle datasets) {
+				record(fileURI, "loaded");
+				if (interrupt != null)
+					interrupt.interrupt();
+			}
+
+			@Override
+			public void failed(URI fileURI, Throwable error) {
+				record(fileURI, error instanceof CancellationException ? "cancelled" : "failed");
+			}
+		};
+	}
+
+	private void record(URI fileURI, String outcome) {
+		if (outcomes.put(fileURI, outcome) != null) {
+			synchronized (repeats) {
+				repeats.add(fileURI);
+			}
+		}
+	}
+}
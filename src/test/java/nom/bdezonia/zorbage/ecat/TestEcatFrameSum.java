@@ -0,0 +1,245 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+import nom.bdezonia.zorbage.type.integer.int16.SignedInt16Member;
+import nom.bdezonia.zorbage.type.real.float64.Float64Member;
+
+/**
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class TestEcatFrameSum {
+
+	private static final int COLS = 6;
+	private static final int ROWS = 5;
+	private static final int PLANES = 3;
+	private static final int VOXELS = COLS * ROWS * PLANES;
+
+	private static final float SCALE = 0.25f;
+	private static final float HALF_LIFE = 1200;
+
+	// frame timing in milliseconds and the decay correction each frame's
+	//   subheader records (frame 2 was corrected at reconstruction)
+
+	private static final int[] STARTS = {0, 30000, 90000, 300000};
+	private static final int[] DURATIONS = {30000, 60000, 210000, 600000};
+	private static final float[] APPLIED = {1, 1, 1.7f, 0};
+
+	private File file;
+	private short[][] pixels;
+	private ExecutorService executor;
+
+	@Before
+	public void makeFile() throws IOException {
+
+		file = File.createTempFile("TestEcatFrameSum", ".v");
+
+		pixels = new short[STARTS.length][VOXELS];
+
+		write(HALF_LIFE);
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	@Test
+	public void sum() throws IOException {
+
+		EcatFrameSum sum = new EcatFrameSum();
+
+		check(sum, new double[] {1, 1, 1, 1}, 1);
+	}
+
+	@Test
+	public void sumOfARange() throws IOException {
+
+		EcatFrameSum sum = new EcatFrameSum();
+		sum.setFirstDataset(1);
+		sum.setLastDataset(2);
+
+		check(sum, new double[] {0, 1, 1, 0}, 1);
+	}
+
+	@Test
+	public void timeWeightedAverage() throws IOException {
+
+		EcatFrameSum sum = new EcatFrameSum();
+		sum.setMethod(EcatFrameSum.Method.TIME_WEIGHTED_AVERAGE);
+
+		double total = 0;
+		double[] weights = new double[STARTS.length];
+		for (int f = 0; f < weights.length; f++) {
+			weights[f] = DURATIONS[f];
+			total += DURATIONS[f];
+		}
+
+		check(sum, weights, 1 / total);
+	}
+
+	@Test
+	public void decayCorrectedSum() throws IOException {
+
+		EcatFrameSum sum = new EcatFrameSum();
+		sum.setDecayCorrection(true);
+
+		double[] weights = new double[STARTS.length];
+		for (int f = 0; f < weights.length; f++)
+			weights[f] = APPLIED[f] != 0 && APPLIED[f] != 1 ? 1 : decayFactor(f);
+
+		check(sum, weights, 1);
+
+		// in parallel too
+
+		executor = Executors.newFixedThreadPool(3);
+
+		check(sum, weights, 1);
+	}
+
+	@Test
+	public void decayCorrectedAverage() throws IOException {
+
+		EcatFrameSum sum = new EcatFrameSum();
+		sum.setMethod(EcatFrameSum.Method.TIME_WEIGHTED_AVERAGE);
+		sum.setDecayCorrection(true);
+
+		double total = 0;
+		double[] weights = new double[STARTS.length];
+		for (int f = 0; f < weights.length; f++) {
+			weights[f] = DURATIONS[f] * (APPLIED[f] != 0 && APPLIED[f] != 1 ? 1 : decayFactor(f));
+			total += DURATIONS[f];
+		}
+
+		check(sum, weights, 1 / total);
+	}
+
+	@Test
+	public void decayCorrectionNeedsAHalfLife() throws IOException {
+
+		write(0);
+
+		EcatFrameSum sum = new EcatFrameSum();
+		sum.setDecayCorrection(true);
+
+		try (EcatFile ecat = EcatFile.open(file.getPath())) {
+
+			sum.compute(ecat);
+
+			fail("a sum was decay corrected without a half life");
+
+		} catch (IllegalArgumentException e) {
+
+			// expected
+		}
+	}
+
+	// compare the reduction voxel by voxel with norm * sum of weight * value
+
+	private void check(EcatFrameSum sum, double[] weights, double norm) throws IOException {
+
+		EcatOptions options = new EcatOptions();
+		if (executor != null)
+			options.setExecutor(executor);
+
+		try (EcatFile ecat = EcatFile.open(file.getPath(), options)) {
+
+			DimensionedDataSource<Float64Member> result = sum.compute(ecat);
+
+			assertEquals(3, result.numDimensions());
+			assertEquals(COLS, result.dimension(0));
+			assertEquals(ROWS, result.dimension(1));
+			assertEquals(PLANES, result.dimension(2));
+
+			Float64Member value = G.DBL.construct();
+			for (int i = 0; i < VOXELS; i++) {
+				double expected = 0;
+				for (int f = 0; f < weights.length; f++)
+					expected += weights[f] * pixels[f][i] * SCALE;
+				expected *= norm;
+				result.rawData().get(i, value);
+				assertEquals("voxel "+i, expected, value.v(), 1e-9 * Math.max(1, Math.abs(expected)));
+			}
+		}
+	}
+
+	// the factor that takes a frame's average activity back to the scan start
+
+	private static double decayFactor(int f) {
+		double lambda = Math.log(2) / HALF_LIFE;
+		double t0 = STARTS[f] / 1000.0;
+		double d = DURATIONS[f] / 1000.0;
+		return Math.exp(lambda * t0) * lambda * d / (1 - Math.exp(-lambda * d));
+	}
+
+	private void write(float halfLife) throws IOException {
+
+		EcatMainHeader main = new EcatMainHeader();
+		main.magicNumber = "MATRIX72v";
+		main.swVersion = 72;
+		main.bedPositions = new float[16];
+		main.isotopeHalflife = halfLife;
+
+		try (EcatWriter writer = new EcatWriter(file.getPath(), 7, ByteOrder.BIG_ENDIAN, main)) {
+
+			for (int f = 0; f < STARTS.length; f++) {
+
+				DimensionedDataSource<SignedInt16Member> frame =
+						DimensionedStorage.allocate(G.INT16.construct(), new long[] {COLS, ROWS, PLANES});
+
+				SignedInt16Member v = G.INT16.construct();
+				for (int i = 0; i < VOXELS; i++) {
+					pixels[f][i] = (short) ((i * 131 + f * 977) % 2000 - 500);
+					v.setV(pixels[f][i]);
+					frame.rawData().set(i, v);
+				}
+
+				EcatImageSubheader sh = new EcatImageSubheader();
+				sh.xPixelSize = 1;
+				sh.yPixelSize = 1;
+				sh.zPixelSize = 1;
+				sh.scaleFactor = SCALE;
+				sh.frameStartTime = STARTS[f];
+				sh.frameDuration = DURATIONS[f];
+				sh.decayCorrFctr = APPLIED[f];
+
+				writer.writeFrame(G.INT16.construct(), frame, sh);
+			}
+		}
+	}
+}
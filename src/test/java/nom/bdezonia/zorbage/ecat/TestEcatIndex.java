@@ -0,0 +1,155 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+
+/**
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class TestEcatIndex {
+
+	// where the entry count is in an index: after the magic number, size, time
+	//   and main header
+
+	private static final int COUNT = 3 * 8 + 512;
+
+	private File dir;
+	private File file;
+	private File sidecar;
+	private byte[] index;
+
+	@Before
+	public void makeIndex() throws IOException {
+
+		dir = Files.createTempDirectory("TestEcatIndex").toFile();
+		file = new File(dir, "file.v");
+		sidecar = EcatIndex.sidecar(file);
+
+		try (EcatWriter writer = new EcatWriter(file.getPath(), 7)) {
+			for (int i = 0; i < 3; i++)
+				writer.writeFrame(G.INT16.construct(),
+						DimensionedStorage.allocate(G.INT16.construct(), new long[] {8, 8, 2}));
+		}
+
+		EcatOptions options = new EcatOptions();
+		options.setSidecarIndex(true);
+		EcatFile.open(file.getPath(), options).close();
+
+		index = Files.readAllBytes(sidecar.toPath());
+	}
+
+	@After
+	public void deleteDir() {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void validIndexIsRead() {
+
+		EcatIndex idx = read();
+
+		assertNotNull(idx);
+		assertEquals(3, idx.directory.size());
+		assertEquals(3, idx.subheaders.length);
+	}
+
+	@Test
+	public void countTheIndexCannotHoldIsRejected() throws IOException {
+
+		ByteBuffer.wrap(index).putInt(COUNT, Integer.MAX_VALUE);
+		Files.write(sidecar.toPath(), index);
+
+		assertNull(read());
+
+		ByteBuffer.wrap(index).putInt(COUNT, -1);
+		Files.write(sidecar.toPath(), index);
+
+		assertNull(read());
+	}
+
+	@Test
+	public void subheaderLongerThanTheIndexIsRejected() throws IOException {
+
+		// the length of the last subheader
+
+		int last = COUNT + 4 + 2 * (5 * 4 + 512) + 4 * 4;
+		assertEquals(512, ByteBuffer.wrap(index).getInt(last));
+
+		ByteBuffer.wrap(index).putInt(last, 1024);
+		Files.write(sidecar.toPath(), index);
+
+		assertNull(read());
+	}
+
+	@Test
+	public void truncatedIndexIsRejected() throws IOException {
+
+		Files.write(sidecar.toPath(), Arrays.copyOf(index, index.length - 100));
+
+		assertNull(read());
+	}
+
+	@Test
+	public void corruptIndexIsNotAnError() throws IOException {
+
+		Random rng = new Random(1);
+
+		for (int i = 0; i < 200; i++) {
+
+			byte[] bytes = index.clone();
+			for (int j = 0; j < 20; j++)
+				bytes[COUNT + rng.nextInt(bytes.length - COUNT)] = (byte) rng.nextInt();
+			Files.write(sidecar.toPath(), bytes);
+
+			read();
+		}
+
+		// and the file can still be opened from its own headers
+
+		EcatOptions options = new EcatOptions();
+		options.setSidecarIndex(true);
+		try (EcatFile ecat = EcatFile.open(file.getPath(), options)) {
+			assertEquals(3, ecat.numDatasets());
+		}
+	}
+
+	private EcatIndex read() {
+		return EcatIndex.read(sidecar, file.length(), file.lastModified());
+	}
+}
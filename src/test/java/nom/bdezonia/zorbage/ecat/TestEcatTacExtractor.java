@@ -0,0 +1,231 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+import nom.bdezonia.zorbage.type.integer.int16.SignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int16.UnsignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int8.UnsignedInt8Member;
+
+/**
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class TestEcatTacExtractor {
+
+	private static final float SCALE = 0.25f;
+	private static final int FRAMES = 3;
+
+	private File file;
+	private short[][] pixels;
+	private ExecutorService executor;
+
+	@Before
+	public void makeFile() throws IOException {
+		file = File.createTempFile("TestEcatTacExtractor", ".v");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	@Test
+	public void overlappingMasks() throws IOException {
+
+		int cols = 9, rows = 7, planes = 4;
+		write(cols, rows, planes);
+
+		// mask 0 has labels 1 - 3 everywhere. mask 1 overlaps it with label 7
+		//   in every plane and label 300 in plane 2 only, so the regions seen in
+		//   each plane (and their local numbers) differ from plane to plane.
+
+		long[][] labels = new long[2][cols * rows * planes];
+		for (int i = 0; i < labels[0].length; i++) {
+			int plane = i / (cols * rows);
+			labels[0][i] = i % 5 < 3 ? i % 5 + 1 : 0;
+			labels[1][i] = plane == 2 && i % 4 == 1 ? 300 : i % 3 == 0 ? 7 : 0;
+		}
+
+		EcatTacExtractor tacs = new EcatTacExtractor();
+		tacs.addMask(G.UINT8.construct(), mask8(labels[0], cols, rows, planes));
+		tacs.addMask(G.UINT16.construct(), mask16(labels[1], cols, rows, planes));
+
+		check(tacs, labels);
+
+		executor = Executors.newFixedThreadPool(3);
+
+		check(tacs, labels);
+	}
+
+	@Test
+	public void regionsAcrossBlockBoundaries() throws IOException {
+
+		// one plane bigger than the blocks the decoder hands over
+
+		int cols = 1024, rows = PixelDecoder.MAX_BLOCK / 1024 + 40, planes = 1;
+		write(cols, rows, planes);
+
+		// a region on each side of a block boundary, one that spans it and a
+		//   sparse one over the whole plane
+
+		int edge = PixelDecoder.MAX_BLOCK;
+		long[][] labels = new long[1][cols * rows];
+		for (int i = edge - 50; i < edge; i++)
+			labels[0][i] = 1;
+		for (int i = edge; i < edge + 50; i++)
+			labels[0][i] = 2;
+		for (int i = edge - 10; i < edge + 10; i += 3)
+			labels[0][i] = 3;
+		for (int i = 17; i < labels[0].length; i += 10007)
+			labels[0][i] = 4;
+
+		EcatTacExtractor tacs = new EcatTacExtractor();
+		tacs.addMask(G.UINT8.construct(), mask8(labels[0], cols, rows, planes));
+
+		check(tacs, labels);
+	}
+
+	// compare every region's count, sums and means with a direct computation
+
+	private void check(EcatTacExtractor extractor, long[][] labels) throws IOException {
+
+		EcatOptions options = new EcatOptions();
+		if (executor != null)
+			options.setExecutor(executor);
+
+		try (EcatFile ecat = EcatFile.open(file.getPath(), options)) {
+
+			EcatTacs tacs = extractor.compute(ecat);
+
+			assertEquals(FRAMES, tacs.numFrames());
+
+			int numRegions = 0;
+
+			for (int m = 0; m < labels.length; m++) {
+
+				// label -> {count, frame sums}
+
+				Map<Long, double[]> expected = new TreeMap<>();
+				for (int i = 0; i < labels[m].length; i++) {
+					if (labels[m][i] == 0)
+						continue;
+					double[] e = expected.computeIfAbsent(labels[m][i], k -> new double[1 + FRAMES]);
+					e[0]++;
+					for (int f = 0; f < FRAMES; f++)
+						e[1 + f] += pixels[f][i] * SCALE;
+				}
+
+				for (Map.Entry<Long, double[]> entry : expected.entrySet()) {
+
+					// regions are numbered by mask and then by label
+
+					int r = tacs.indexOf(m, entry.getKey());
+					assertEquals(numRegions++, r);
+					assertEquals(m, tacs.getMask(r));
+					assertEquals((long) entry.getKey(), tacs.getLabel(r));
+
+					double[] e = entry.getValue();
+					assertEquals((long) e[0], tacs.getVoxelCount(r));
+					for (int f = 0; f < FRAMES; f++) {
+						String what = "mask "+m+" label "+entry.getKey()+" frame "+f;
+						assertEquals(what, e[1 + f], tacs.getSum(f, r), 1e-9 * Math.max(1, Math.abs(e[1 + f])));
+						assertEquals(what, e[1 + f] / e[0], tacs.getMean(f, r), 1e-9 * Math.max(1, Math.abs(e[1 + f] / e[0])));
+					}
+				}
+			}
+
+			assertEquals(numRegions, tacs.numRegions());
+			assertTrue(numRegions > 0);
+		}
+	}
+
+	private void write(int cols, int rows, int planes) throws IOException {
+
+		int voxels = cols * rows * planes;
+
+		pixels = new short[FRAMES][voxels];
+
+		try (EcatWriter writer = new EcatWriter(file.getPath(), 7)) {
+
+			for (int f = 0; f < FRAMES; f++) {
+
+				DimensionedDataSource<SignedInt16Member> frame =
+						DimensionedStorage.allocate(G.INT16.construct(), new long[] {cols, rows, planes});
+
+				SignedInt16Member v = G.INT16.construct();
+				for (int i = 0; i < voxels; i++) {
+					pixels[f][i] = (short) ((i * 7919L + f * 104729) % 3000 - 1000);
+					v.setV(pixels[f][i]);
+					frame.rawData().set(i, v);
+				}
+
+				EcatImageSubheader sh = new EcatImageSubheader();
+				sh.xPixelSize = 1;
+				sh.yPixelSize = 1;
+				sh.zPixelSize = 1;
+				sh.scaleFactor = SCALE;
+				sh.frameStartTime = f * 60000;
+				sh.frameDuration = 60000;
+
+				writer.writeFrame(G.INT16.construct(), frame, sh);
+			}
+		}
+	}
+
+	private static DimensionedDataSource<UnsignedInt8Member> mask8(long[] labels, int cols, int rows, int planes) {
+		DimensionedDataSource<UnsignedInt8Member> mask =
+				DimensionedStorage.allocate(G.UINT8.construct(), new long[] {cols, rows, planes});
+		UnsignedInt8Member v = G.UINT8.construct();
+		for (int i = 0; i < labels.length; i++) {
+			v.setV((int) labels[i]);
+			mask.rawData().set(i, v);
+		}
+		return mask;
+	}
+
+	private static DimensionedDataSource<UnsignedInt16Member> mask16(long[] labels, int cols, int rows, int planes) {
+		DimensionedDataSource<UnsignedInt16Member> mask =
+				DimensionedStorage.allocate(G.UINT16.construct(), new long[] {cols, rows, planes});
+		UnsignedInt16Member v = G.UINT16.construct();
+		for (int i = 0; i < labels.length; i++) {
+			v.setV((int) labels[i]);
+			mask.rawData().set(i, v);
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nom.bdezonia.zorbage.algebra.Allocatable;
+import nom.bdezonia.zorbage.algebra.G;
+import nom.bdezonia.zorbage.data.DimensionedDataSource;
+import nom.bdezonia.zorbage.data.DimensionedStorage;
+import nom.bdezonia.zorbage.type.integer.int16.SignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int16.UnsignedInt16Member;
+import nom.bdezonia.zorbage.type.integer.int32.SignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int32.UnsignedInt32Member;
+import nom.bdezonia.zorbage.type.integer.int8.SignedInt8Member;
+import nom.bdezonia.zorbage.type.integer.int8.UnsignedInt8Member;
+import nom.bdezonia.zorbage.type.real.float32.Float32Member;
+import nom.bdezonia.zorbage.type.real.float64.Float64Member;
+
+/**
+ * 
+ * @author Barry DeZonia
+ *
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class TestEcatWriter {
+
+	private static final long COLS = 7;
+	private static final long ROWS = 5;
+	private static final long PLANES = 3;
+
+	private File file;
+
+	@Before
+	public void makeFile() throws IOException {
+		file = File.createTempFile("TestEcatWriter", ".v");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void imageFilesRoundTrip() throws IOException {
+		roundTrip(7);
+	}
+
+	@Test
+	public void scanFilesRoundTrip() throws IOException {
+		roundTrip(11);
+	}
+
+	@Test
+	public void float64FramesAreNarrowed() throws IOException {
+
+		DimensionedDataSource frame = frame(G.DBL.construct(), 1);
+
+		try (EcatWriter writer = new EcatWriter(file.getPath(), 7)) {
+			writer.writeFrame(G.DBL.construct(), frame);
+		}
+
+		try (EcatFile ecat = EcatFile.open(file.getPath())) {
+
+			DimensionedDataSource ds = ecat.dataset(0);
+			Float32Member expected = G.FLT.construct();
+			Float32Member actual = G.FLT.construct();
+			Float64Member value = G.DBL.construct();
+			for (long i = 0; i < ds.rawData().size(); i++) {
+				frame.rawData().get(i, value);
+				ds.rawData().get(i, actual);
+				expected.setV((float) value.v());
+				assertEquals(expected.v(), actual.v(), 0);
+			}
+		}
+	}
+
+	// write two frames of each type to one file: one with no negative values
+	//   and one that spans the range of the type. read them back and check the
+	//   types, values and recorded ranges.
+
+	private void roundTrip(int fileType) throws IOException {
+
+		for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+
+			Allocatable[] types = new Allocatable[] {
+					G.INT8.construct(), G.UINT8.construct(),
+					G.INT16.construct(), G.UINT16.construct(),
+					G.INT32.construct(), G.UINT32.construct(),
+					G.FLT.construct()
+			};
+
+			DimensionedDataSource[] frames = new DimensionedDataSource[2 * types.length];
+
+			try (EcatWriter writer = new EcatWriter(file.getPath(), fileType, order, null)) {
+				for (int t = 0; t < types.length; t++) {
+					for (int f = 0; f < 2; f++) {
+						frames[2*t + f] = frame(types[t], f);
+						writer.writeFrame(types[t], frames[2*t + f]);
+					}
+				}
+			}
+
+			try (EcatFile ecat = EcatFile.open(file.getPath())) {
+
+				String where = "file type "+fileType+" "+order+" ";
+
+				assertEquals(where, fileType, ecat.getMainHeader().fileType);
+				assertEquals(where, order == ByteOrder.BIG_ENDIAN, ecat.getMainHeader().fileIsBigEndian);
+				assertEquals(where, frames.length, ecat.numDatasets());
+
+				for (int i = 0; i < frames.length; i++) {
+
+					Allocatable type = types[i / 2];
+					String what = where + type.getClass().getSimpleName() + " frame " + i;
+
+					EcatSubheader sh = ecat.subheader(i);
+					assertEquals(what, signed(type), sh.isSignedData());
+
+					DimensionedDataSource ds = ecat.dataset(i);
+					assertEquals(what, 3, ds.numDimensions());
+					assertEquals(what, COLS, ds.dimension(0));
+					assertEquals(what, ROWS, ds.dimension(1));
+					assertEquals(what, PLANES, ds.dimension(2));
+
+					// reading into a value of the written type checks the type too
+
+					Allocatable expected = (Allocatable) type.allocate();
+					Allocatable actual = (Allocatable) type.allocate();
+					double min = Double.POSITIVE_INFINITY;
+					double max = Double.NEGATIVE_INFINITY;
+					for (long j = 0; j < ds.rawData().size(); j++) {
+						frames[i].rawData().get(j, expected);
+						ds.rawData().get(j, actual);
+						assertEquals(what, get(expected), get(actual), 0);
+						min = Math.min(min, get(expected));
+						max = Math.max(max, get(expected));
+					}
+
+					// only 8 and 16 bit ranges that fit in a short are recorded
+
+					boolean recorded = bits(type) <= 16 && max <= Short.MAX_VALUE;
+					assertEquals(what, recorded ? min : 0, sh.headerMin(), 0);
+					assertEquals(what, recorded ? max : 0, sh.headerMax(), 0);
+				}
+			}
+		}
+	}
+
+	// frame 0 holds small non negative values. frame 1 holds the smallest and
+	//   largest values of the type and values on both sides of 0.
+
+	private static DimensionedDataSource frame(Allocatable type, int f) {
+
+		DimensionedDataSource frame =
+				DimensionedStorage.allocate((Allocatable) type.allocate(), new long[] {COLS, ROWS, PLANES});
+
+		Allocatable value = (Allocatable) type.allocate();
+		long n = frame.rawData().size();
+		for (long i = 0; i < n; i++) {
+			double v;
+			if (f == 0)
+				v = i % 100;
+			else if (i == 0)
+				v = smallest(type);
+			else if (i == n - 1)
+				v = largest(type);
+			else if (value instanceof Float32Member || value instanceof Float64Member)
+				v = (i - n / 2) * 1234.5678;
+			else
+				v = (i * 37) % 200 - (signed(type) ? 100 : 0);
+			set(value, v);
+			frame.rawData().set(i, value);
+		}
+		return frame;
+	}
+
+	private static boolean signed(Allocatable type) {
+		return type instanceof SignedInt8Member ||
+				type instanceof SignedInt16Member ||
+				type instanceof SignedInt32Member;
+	}
+
+	private static int bits(Allocatable type) {
+		if (type instanceof SignedInt8Member || type instanceof UnsignedInt8Member)
+			return 8;
+		if (type instanceof SignedInt16Member || type instanceof UnsignedInt16Member)
+			return 16;
+		return 32;
+	}
+
+	private static double smallest(Allocatable type) {
+		if (type instanceof SignedInt8Member) return Byte.MIN_VALUE;
+		if (type instanceof SignedInt16Member) return Short.MIN_VALUE;
+		if (type instanceof SignedInt32Member) return Integer.MIN_VALUE;
+		if (type instanceof Float32Member || type instanceof Float64Member) return -Float.MAX_VALUE;
+		return 0;
+	}
+
+	private static double largest(Allocatable type) {
+		if (type instanceof SignedInt8Member) return Byte.MAX_VALUE;
+		if (type instanceof UnsignedInt8Member) return 255;
+		if (type instanceof SignedInt16Member) return Short.MAX_VALUE;
+		if (type instanceof UnsignedInt16Member) return 65535;
+		if (type instanceof SignedInt32Member) return Integer.MAX_VALUE;
+		if (type instanceof UnsignedInt32Member) return 4294967295.0;
+		return Float.MAX_VALUE;
+	}
+
+	private static void set(Allocatable value, double v) {
+		if (value instanceof SignedInt8Member) ((SignedInt8Member) value).setV((byte) v);
+		else if (value instanceof UnsignedInt8Member) ((UnsignedInt8Member) value).setV((int) v);
+		else if (value instanceof SignedInt16Member) ((SignedInt16Member) value).setV((short) v);
+		else if (value instanceof UnsignedInt16Member) ((UnsignedInt16Member) value).setV((int) v);
+		else if (value instanceof SignedInt32Member) ((SignedInt32Member) value).setV((int) v);
+		else if (value instanceof UnsignedInt32Member) ((UnsignedInt32Member) value).setV((long) v);
+		else if (value instanceof Float32Member) ((Float32Member) value).setV((float) v);
+		else ((Float64Member) value).setV(v);
+	}
+
+	private static double get(Allocatable value) {
+		if (value instanceof SignedInt8Member) return ((SignedInt8Member) value).v();
+		if (value instanceof UnsignedInt8Member) return ((UnsignedInt8Member) value).v();
+		if (value instanceof SignedInt16Member) return ((SignedInt16Member) value).v();
+		if (value instanceof UnsignedInt16Member) return ((UnsignedInt16Member) value).v();
+		if (value instanceof SignedInt32Member) return ((SignedInt32Member) value).v();
+		if (value instanceof UnsignedInt32Member) return ((UnsignedInt32Member) value).v();
+		if (value instanceof Float32Member) return ((Float32Member) value).v();
+		return ((Float64Member) value).v();
+	}
+}
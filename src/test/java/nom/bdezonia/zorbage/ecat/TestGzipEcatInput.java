@@ -0,0 +1,318 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Barry DeZonia
+ *
+ */
+public class TestGzipEcatInput {
+
+	private static final int BLOCK = 20000;
+
+	private File dir;
+	private File file;
+
+	@Before
+	public void makeDir() throws IOException {
+		dir = Files.createTempDirectory("TestGzipEcatInput").toFile();
+		file = new File(dir, "file.v.gz");
+	}
+
+	@After
+	public void deleteDir() {
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void multiMemberFilesHaveACheckpointPerMember() throws IOException {
+
+		byte[] content = content(220000, 1);
+
+		// members of 100000, 50000 and 70000 bytes
+
+		byte[] first = gzip(content, 0, 100000);
+		byte[] second = gzip(content, 100000, 50000);
+		byte[] third = gzip(content, 150000, 70000);
+		write(file, first, second, third);
+
+		try (GzipEcatInput in = GzipEcatInput.open(file, false)) {
+
+			assertArrayEquals(content, read(in, 0, content.length));
+
+			long[][] expected = new long[][] {
+				{0, 0},
+				{first.length, 100000},
+				{first.length + second.length, 150000}
+			};
+			assertCheckpoints(expected, in.checkpoints());
+
+			// going back into the third member restarts at its start
+
+			long before = in.bytesInflated();
+
+			assertArrayEquals(Arrays.copyOfRange(content, 160000, 161000), read(in, 160000, 1000));
+			assertTrue(in.bytesInflated() - before <= 161000 - 150000 + (1 << 16));
+
+			// going back into the first member restarts at the start of the file
+
+			assertArrayEquals(Arrays.copyOfRange(content, 10, 20), read(in, 10, 10));
+		}
+	}
+
+	@Test
+	public void bgzipFilesAreScannedWithoutInflating() throws IOException {
+
+		byte[] content = content(10 * BLOCK + 1234, 2);
+		long[][] expected = bgzip(file, content);
+
+		try (GzipEcatInput in = GzipEcatInput.open(file, true)) {
+
+			// the BC block sizes give every member without inflating any
+
+			assertCheckpoints(expected, in.checkpoints());
+			assertEquals(0, in.bytesInflated());
+		}
+
+		// the index holds every checkpoint but the first one
+
+		assertTrue(GzipEcatInput.sidecar(file).isFile());
+
+		ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(GzipEcatInput.sidecar(file).toPath()));
+		index.order(ByteOrder.LITTLE_ENDIAN);
+
+		assertEquals(expected.length - 1, index.getLong());
+		for (int i = 1; i < expected.length; i++) {
+			assertEquals(expected[i][0], index.getLong());
+			assertEquals(expected[i][1], index.getLong());
+		}
+		assertEquals(0, index.remaining());
+	}
+
+	@Test
+	public void indexedBgzipFilesSeekStraightToABlock() throws IOException {
+
+		byte[] content = content(10 * BLOCK + 1234, 3);
+		long[][] expected = bgzip(file, content);
+
+		GzipEcatInput.open(file, true).close();
+
+		try (GzipEcatInput in = GzipEcatInput.open(file, true)) {
+
+			assertCheckpoints(expected, in.checkpoints());
+
+			// only the block that holds the bytes is inflated
+
+			long pos = 7L * BLOCK + 500;
+			assertArrayEquals(Arrays.copyOfRange(content, (int) pos, (int) pos + 100), read(in, pos, 100));
+			assertTrue(in.bytesInflated() <= BLOCK);
+		}
+	}
+
+	@Test
+	public void backwardSeeksRestartAtTheNearestCheckpoint() throws IOException {
+
+		byte[] content = content(10 * BLOCK, 4);
+		bgzip(file, content);
+
+		try (GzipEcatInput in = GzipEcatInput.open(file, false)) {
+
+			assertArrayEquals(content, read(in, 0, content.length));
+
+			for (int block : new int[] {8, 3, 5, 0}) {
+
+				long before = in.bytesInflated();
+				long pos = block * BLOCK + 17L;
+
+				assertArrayEquals(Arrays.copyOfRange(content, (int) pos, (int) pos + 1000), read(in, pos, 1000));
+				assertTrue(in.bytesInflated() - before <= BLOCK);
+			}
+		}
+	}
+
+	@Test
+	public void olderIndexIsIgnored() throws IOException {
+
+		bgzip(file, content(6 * BLOCK, 5));
+		GzipEcatInput.open(file, true).close();
+
+		// a new file made of other blocks with an index that is older than it
+
+		byte[] content = content(9 * BLOCK + 99, 6);
+		long[][] expected = bgzip(file, content);
+		File index = GzipEcatInput.sidecar(file);
+		index.setLastModified(file.lastModified() - 10000);
+
+		try (GzipEcatInput in = GzipEcatInput.open(file, true)) {
+
+			assertCheckpoints(expected, in.checkpoints());
+			assertArrayEquals(content, read(in, 0, content.length));
+		}
+
+		// and it was replaced
+
+		assertTrue(index.lastModified() >= file.lastModified());
+		assertEquals(8 + 16 * (expected.length - 1), index.length());
+	}
+
+	@Test
+	public void indexThatDoesNotMatchIsReplaced() throws IOException {
+
+		bgzip(file, content(6 * BLOCK, 7));
+		GzipEcatInput.open(file, true).close();
+
+		// a new file with other block boundaries. the index looks up to date
+		//   but its checkpoints are not at the start of a member.
+
+		byte[] content = content(9 * BLOCK + 99, 8);
+		long[][] expected = bgzip(file, content, BLOCK / 3);
+		File index = GzipEcatInput.sidecar(file);
+		index.setLastModified(file.lastModified() + 10000);
+
+		try (GzipEcatInput in = GzipEcatInput.open(file, true)) {
+
+			long pos = 4L * BLOCK + 3;
+			assertArrayEquals(Arrays.copyOfRange(content, (int) pos, (int) pos + 5000), read(in, pos, 5000));
+
+			// the first restart found the mismatch and scanned the file again
+
+			assertCheckpoints(expected, in.checkpoints());
+			assertArrayEquals(content, read(in, 0, content.length));
+		}
+
+		assertEquals(8 + 16 * (expected.length - 1), index.length());
+	}
+
+	private static void assertCheckpoints(long[][] expected, long[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+			assertArrayEquals(expected[i], actual[i]);
+	}
+
+	private static byte[] read(GzipEcatInput in, long pos, int len) throws IOException {
+		byte[] bytes = new byte[len];
+		in.seek(pos);
+		in.readFully(bytes, 0, len);
+		assertEquals(pos + len, in.position());
+		return bytes;
+	}
+
+	// bytes that compress some but not too well
+
+	private static byte[] content(int len, long seed) {
+		byte[] bytes = new byte[len];
+		Random rng = new Random(seed);
+		for (int i = 0; i < len; i++)
+			bytes[i] = (byte) (rng.nextInt(16) + (i / 1000));
+		return bytes;
+	}
+
+	private static byte[] gzip(byte[] bytes, int off, int len) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+			gz.write(bytes, off, len);
+		}
+		return out.toByteArray();
+	}
+
+	private static long[][] bgzip(File f, byte[] content) throws IOException {
+		return bgzip(f, content, BLOCK);
+	}
+
+	// write the bytes as bgzip does: blocks with their size in a BC extra field
+	//   then an empty block. returns the checkpoints of the blocks. the empty
+	//   block is a member too so it has one at the end of the data.
+
+	private static long[][] bgzip(File f, byte[] content, int blockSize) throws IOException {
+
+		int numBlocks = (content.length + blockSize - 1) / blockSize;
+
+		byte[][] blocks = new byte[numBlocks + 1][];
+		long[][] checkpoints = new long[numBlocks + 1][];
+
+		long comp = 0;
+		for (int i = 0; i < numBlocks; i++) {
+			int off = i * blockSize;
+			blocks[i] = bgzfBlock(content, off, Math.min(blockSize, content.length - off));
+			checkpoints[i] = new long[] {comp, off};
+			comp += blocks[i].length;
+		}
+		blocks[numBlocks] = bgzfBlock(content, 0, 0);
+		checkpoints[numBlocks] = new long[] {comp, content.length};
+
+		write(f, blocks);
+
+		return checkpoints;
+	}
+
+	private static byte[] bgzfBlock(byte[] bytes, int off, int len) {
+
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(bytes, off, len);
+		deflater.finish();
+		byte[] data = new byte[len + 1024];
+		int dataLen = 0;
+		while (!deflater.finished())
+			dataLen += deflater.deflate(data, dataLen, data.length - dataLen);
+		deflater.end();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, off, len);
+
+		int size = 18 + dataLen + 8;
+
+		ByteBuffer block = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		block.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 4);  // FEXTRA
+		block.putInt(0).put((byte) 0).put((byte) 0xff);  // mtime, xfl, os
+		block.putShort((short) 6);
+		block.put((byte) 'B').put((byte) 'C').putShort((short) 2).putShort((short) (size - 1));
+		block.put(data, 0, dataLen);
+		block.putInt((int) crc.getValue()).putInt(len);
+		return block.array();
+	}
+
+	private static void write(File f, byte[]... parts) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts)
+			out.write(part);
+		Files.write(f.toPath(), out.toByteArray());
+	}
+}
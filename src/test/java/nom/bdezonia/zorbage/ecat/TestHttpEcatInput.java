@@ -0,0 +1,322 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * @author Barry DeZonia
+ *
+ */
+public class TestHttpEcatInput {
+
+	private static final int BS = HttpEcatInput.BLOCK_SIZE;
+
+	private HttpServer server;
+
+	// what the server serves. tests change these to simulate a file that
+	//   changes or a server that does not honor ranges.
+
+	private volatile byte[] content;
+	private volatile String etag;
+	private volatile String lastModified;
+	private volatile boolean honorRange = true;
+	private volatile boolean honorIfRange = true;
+
+	// what the server was asked for: {first, last} of each range request and
+	//   the If-Range header of each request
+
+	private final List<long[]> ranges = new ArrayList<>();
+	private final List<String> ifRanges = new ArrayList<>();
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void missingBlocksAreFetchedInOneRequest() throws IOException {
+
+		serve(20);
+
+		HttpEcatInput in = HttpEcatInput.open(url());
+
+		assertNotNull(in);
+		assertEquals(1, ranges.size());
+		assertEquals(2L * BS, in.bytesFetched());
+
+		// blocks 5, 6 and 7 plus one block of read ahead
+
+		byte[] bytes = new byte[3 * BS];
+		in.seek(5L * BS);
+		in.readFully(bytes, 0, bytes.length);
+
+		assertArrayEquals(Arrays.copyOfRange(content, 5 * BS, 8 * BS), bytes);
+		assertEquals(2, ranges.size());
+		assertEquals(5L * BS, ranges.get(1)[0]);
+		assertEquals(9L * BS - 1, ranges.get(1)[1]);
+		assertEquals(6L * BS, in.bytesFetched());
+
+		// cached blocks are not fetched again
+
+		in.seek(6L * BS);
+		in.readFully(bytes, 0, bytes.length);
+
+		assertArrayEquals(Arrays.copyOfRange(content, 6 * BS, 9 * BS), bytes);
+
+		assertEquals(2, ranges.size());
+		assertEquals(6L * BS, in.bytesFetched());
+
+		in.close();
+	}
+
+	@Test
+	public void readAheadGrowsWhileReadsAreSequential() throws IOException {
+
+		serve(40);
+
+		HttpEcatInput in = HttpEcatInput.open(url());
+
+		byte[] all = new byte[content.length];
+		for (int off = 0; off < all.length; off += 4096)
+			in.readFully(all, off, Math.min(4096, all.length - off));
+
+		assertArrayEquals(content, all);
+		assertEquals(content.length, in.bytesFetched());
+
+		// the read ahead doubles from one block to eight
+
+		long[] blocks = new long[ranges.size()];
+		for (int i = 0; i < blocks.length; i++)
+			blocks[i] = (ranges.get(i)[1] - ranges.get(i)[0] + 1) / BS;
+
+		assertArrayEquals(new long[] {2, 3, 5, 9, 9, 9, 3}, blocks);
+
+		// a jump resets it
+
+		in.close();
+		in = HttpEcatInput.open(url());
+		ranges.clear();
+		in.seek(30L * BS);
+		in.readFully(all, 0, 10);
+
+		assertEquals(30L * BS, ranges.get(0)[0]);
+		assertEquals(32L * BS - 1, ranges.get(0)[1]);
+
+		in.close();
+	}
+
+	@Test
+	public void serverWithoutRangesIsStreamed() throws IOException {
+
+		serve(3);
+		honorRange = false;
+
+		assertNull(HttpEcatInput.open(url()));
+
+		try (EcatInput in = EcatInput.open(uri())) {
+
+			assertFalse(in.isRandomAccess());
+
+			byte[] bytes = new byte[content.length];
+			in.readFully(bytes, 0, bytes.length);
+
+			assertArrayEquals(content, bytes);
+		}
+	}
+
+	@Test
+	public void changedETagFailsTheRead() throws IOException {
+
+		serve(20);
+		etag = "\"1\"";
+
+		HttpEcatInput in = HttpEcatInput.open(url());
+
+		change();
+		etag = "\"2\"";
+
+		assertReadFails(in);
+		assertEquals("\"1\"", ifRanges.get(1));
+	}
+
+	@Test
+	public void changedETagFailsTheReadWhenIfRangeIsIgnored() throws IOException {
+
+		serve(20);
+		etag = "\"1\"";
+		honorIfRange = false;
+
+		HttpEcatInput in = HttpEcatInput.open(url());
+
+		change();
+		etag = "\"2\"";
+
+		assertReadFails(in);
+	}
+
+	@Test
+	public void weakETagIsNotUsedAsAValidator() throws IOException {
+
+		serve(20);
+		etag = "W/\"1\"";
+		lastModified = "Mon, 05 Oct 2026 10:00:00 GMT";
+
+		HttpEcatInput in = HttpEcatInput.open(url());
+
+		in.seek(10L * BS);
+		in.readFully(new byte[10], 0, 10);
+
+		assertEquals(lastModified, ifRanges.get(1));
+
+		// the weak tag stays the same while the file changes
+
+		change();
+		lastModified = "Mon, 05 Oct 2026 10:00:05 GMT";
+
+		assertReadFails(in);
+	}
+
+	@Test
+	public void changedSizeFailsTheRead() throws IOException {
+
+		serve(20);
+		honorIfRange = false;
+
+		HttpEcatInput in = HttpEcatInput.open(url());
+
+		content = Arrays.copyOf(content, content.length + 1000);
+
+		assertReadFails(in);
+	}
+
+	// read a block that is not cached yet and expect the read to fail
+
+	private void assertReadFails(HttpEcatInput in) throws IOException {
+
+		in.seek(15L * BS);
+
+		try {
+
+			in.readFully(new byte[10], 0, 10);
+
+			fail("a read of a changed file succeeded");
+
+		} catch (IOException e) {
+
+			// expected
+		}
+
+		in.close();
+	}
+
+	private void serve(int numBlocks) {
+		content = new byte[numBlocks * BS];
+		new Random(numBlocks).nextBytes(content);
+	}
+
+	private void change() {
+		byte[] bytes = content.clone();
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i]++;
+		content = bytes;
+	}
+
+	private URI uri() {
+		return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/file.v");
+	}
+
+	private URL url() throws IOException {
+		return uri().toURL();
+	}
+
+	// a minimal server for single byte ranges that honors If-Range
+
+	private void handle(HttpExchange exchange) throws IOException {
+
+		byte[] bytes = content;
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+
+		long first = 0;
+		long last = bytes.length - 1;
+		boolean partial = honorRange && range != null;
+
+		if (partial) {
+			String spec = range.substring("bytes=".length());
+			first = Long.parseLong(spec.substring(0, spec.indexOf('-')));
+			last = Math.min(last, Long.parseLong(spec.substring(spec.indexOf('-') + 1)));
+			synchronized (this) {
+				ranges.add(new long[] {first, last});
+				ifRanges.add(ifRange);
+			}
+		}
+
+		if (partial && honorIfRange && ifRange != null && !ifRange.equals(etag) && !ifRange.equals(lastModified)) {
+			partial = false;
+			first = 0;
+			last = bytes.length - 1;
+		}
+
+		if (etag != null)
+			exchange.getResponseHeaders().set("ETag", etag);
+		if (lastModified != null)
+			exchange.getResponseHeaders().set("Last-Modified", lastModified);
+		if (partial)
+			exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + bytes.length);
+
+		int len = (int) (last - first + 1);
+
+		exchange.sendResponseHeaders(partial ? 206 : 200, len);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes, (int) first, len);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+  Copyright (C) 2021-2022 Barry DeZonia
+
+  This library is free software; you can redistribute it and/or modify it
+  under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation; either version 2.1 of the License, or (at
+  your option) any later version.
+
+  This library is distributed in the hope that it will be useful, but
+  WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser
+  General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with this library; if not, write to the Free Software Foundation,
+  Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package nom.bdezonia.zorbage.ecat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Barry DeZonia
+ *
+ */
+public class TestPixelDecoder {
+
+	// the conversion the reader used before the table based one. the
+	//   benchmarks project has VaxFloatCheck which compares the two for all
+	//   2^32 bit patterns.
+
+	private static double vaxFloatBitsToDoubleOld(int bits) {
+
+		int sign = (bits >> 31) & 1;
+		int exponent = (bits >> 23) & 0xff;
+		int mantissa = (bits >> 0) & ((1<<24) - 1);
+		
+		double value = (1.0 + (mantissa / Math.pow(2, 23))) * Math.pow(2, exponent - 129);
+
+		if (sign == 0)
+			return value;
+		
+		return -value;
+	}
+
+	// every upper 16 bits (sign, exponent and the top of the mantissa) with a
+	//   spread of lower 16 bits including both ends
+
+	@Test
+	public void vaxFloatsMatchTheOldConversion() {
+
+		int[] lows = new int[263];
+		for (int i = 0; i < lows.length - 1; i++)
+			lows[i] = i * 251;
+		lows[lows.length - 1] = 0xffff;
+
+		int n = lows.length;
+		int[] src = new int[n];
+		double[] dst = new double[n];
+		double[] swapped = new double[n];
+
+		for (int hi = 0; hi < (1 << 16); hi++) {
+
+			for (int i = 0; i < n; i++)
+				src[i] = (hi << 16) | lows[i];
+
+			PixelDecoder.vaxFloatBitsToDoubles(src, dst, n, false);
+
+			for (int i = 0; i < n; i++) {
+
+				long expected = Double.doubleToRawLongBits(vaxFloatBitsToDoubleOld(src[i]));
+
+				assertEquals(expected, Double.doubleToRawLongBits(dst[i]));
+				assertEquals(expected, Double.doubleToRawLongBits(PixelDecoder.vaxFloatBitsToDouble(src[i])));
+			}
+
+			// little endian files store the two 16-bit words the other way around
+
+			for (int i = 0; i < n; i++)
+				src[i] = Integer.rotateLeft(src[i], 16);
+
+			PixelDecoder.vaxFloatBitsToDoubles(src, swapped, n, true);
+
+			for (int i = 0; i < n; i++)
+				assertEquals(Double.doubleToRawLongBits(dst[i]), Double.doubleToRawLongBits(swapped[i]));
+		}
+	}
+
+	// little endian files hold the two 16-bit words of a vax float in the
+	//   other order but the bytes within each word are not swapped. the first
+	//   value has a low word of 0x8000 or more: before the table based
+	//   conversion its swapped word was sign extended over the sign and
+	//   exponent and it decoded to a huge negative number.
+
+	@Test
+	public void littleEndianVaxFloatsSwapWordsOnly() throws IOException {
+
+		byte[] big = {
+				0x40, (byte) 0x80, (byte) 0x80, 0x00,
+				(byte) 0xc1, 0x20, 0x00, 0x00,
+				0x40, (byte) 0x80, 0x00, 0x00 };
+
+		byte[] little = {
+				(byte) 0x80, 0x00, 0x40, (byte) 0x80,
+				0x00, 0x00, (byte) 0xc1, 0x20,
+				0x00, 0x00, 0x40, (byte) 0x80 };
+
+		double[] expected = {2.00390625, -2.5, 2.0};
+
+		assertArrayEquals(expected, decodeVax(big, ByteOrder.BIG_ENDIAN), 0);
+		assertArrayEquals(expected, decodeVax(little, ByteOrder.LITTLE_ENDIAN), 0);
+	}
+
+	private static double[] decodeVax(byte[] bytes, ByteOrder order) throws IOException {
+
+		BufferEcatInput in = new BufferEcatInput(ByteBuffer.wrap(bytes));
+
+		in.order(order);
+
+		PixelDecoder decoder = PixelDecoder.forThread();
+
+		int n = bytes.length / 4;
+
+		decoder.readDoubles(in, (short) 4, false, n);
+
+		return Arrays.copyOf(decoder.doubles(), n);
+	}
+}